@@ -0,0 +1,19 @@
+package com.github.liyue2008.actor.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 性能测试的公共方法
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {}
+
+    /**
+     * 等待计数器达到目标值。消息在ActorThread中异步处理，只有全部处理完才能结束一次调用。
+     */
+    static void await(AtomicLong counter, long target) {
+        while (counter.get() < target) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorSystem;
+import com.github.liyue2008.actor.annotation.ActorListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 消息处理方法的调用开销：MethodHandle调用、编译时生成的调用类、lambda，
+ * 以及在lambda中通过Method.invoke反射调用作为对照。
+ * 使用虚拟时间的ActorSystem，在测试线程中处理消息，排除线程切换的影响。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"methodHandle", "generated", "lambda", "reflection"})
+    public String handler;
+
+    private Actor sender;
+    private ActorSystem actorSystem;
+    private long count = 0L;
+
+    @Setup(Level.Trial)
+    public void setup() throws NoSuchMethodException {
+        sender = Actor.builder().addr("sender").build();
+        Actor.Builder builder = Actor.builder().addr("handler");
+        switch (handler) {
+            case "methodHandle":
+                builder.setHandlerInstance(new MethodHandleHandler());
+                break;
+            case "generated":
+                builder.setHandlerInstance(new GeneratedHandler());
+                break;
+            case "reflection":
+                ReflectionHandler target = new ReflectionHandler();
+                Method method = ReflectionHandler.class.getDeclaredMethod("onMessage", Integer.class);
+                builder.addActorListener("onMessage", (Consumer<Integer>) i -> {
+                    try {
+                        method.invoke(target, i);
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                break;
+            default:
+                builder.addActorListener("onMessage", (Consumer<Integer>) i -> count += i);
+        }
+        actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(builder.build())
+                .directDelivery(true)
+                .virtualTime(0L)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long dispatch() {
+        for (int i = 0; i < BATCH; i++) {
+            sender.send("handler", "onMessage", 1);
+        }
+        actorSystem.runFor(0, TimeUnit.MILLISECONDS);
+        return count;
+    }
+
+    // 注解处理器不为私有类生成调用类，通过MethodHandle调用
+    private class MethodHandleHandler {
+        @ActorListener
+        void onMessage(Integer i) {
+            count += i;
+        }
+    }
+
+    public class ReflectionHandler {
+        public void onMessage(Integer i) {
+            count += i;
+        }
+    }
+
+    class GeneratedHandler {
+        @ActorListener
+        void onMessage(Integer i) {
+            count += i;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * N对1汇聚：多个生产者Actor同时向一个接收者发送消息，测试接收者收件箱的竞争。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FanInBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"1", "4", "16"})
+    public int producers;
+
+    @Param({"1", "4"})
+    public int threadCount;
+
+    private final AtomicLong received = new AtomicLong();
+    private long expected = 0L;
+    private Actor driver;
+    private ActorSystem actorSystem;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        driver = Actor.builder().addr("driver").build();
+        Actor sink = Actor.builder().addr("sink")
+                .addActorListener("count", (Runnable) received::incrementAndGet)
+                .build();
+        List<Actor> actors = new ArrayList<>();
+        actors.add(driver);
+        actors.add(sink);
+        int burst = BATCH / producers;
+        for (int i = 0; i < producers; i++) {
+            Actor[] producer = new Actor[1];
+            producer[0] = Actor.builder().addr("producer-" + i)
+                    .addActorListener("burst", () -> {
+                        for (int j = 0; j < burst; j++) {
+                            producer[0].send("sink", "count");
+                        }
+                    })
+                    .build();
+            actors.add(producer[0]);
+        }
+        actorSystem = ActorSystem.builder()
+                .addActors(actors)
+                .threadCount(threadCount)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void fanIn() {
+        for (int i = 0; i < producers; i++) {
+            driver.send("producer-" + i, "burst");
+        }
+        expected += BATCH;
+        BenchmarkSupport.await(received, expected);
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorSystem;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环压测工具：按固定的目标速率发送sendThen请求，不等待上一个请求的响应，统计每个请求的延迟。
+ *
+ * 延迟从请求计划的发送时间开始计算，而不是实际的发送时间。系统处理不过来时，发送线程被拖慢，
+ * 实际发送时间落后于计划时间，这段排队时间也计入延迟，避免coordinated omission低估延迟。
+ * 同时统计从实际发送时间开始计算的延迟作为对比。
+ *
+ * 对每个线程数，依次用每个目标速率压测，打印吞吐量和延迟的百分位，吞吐量达不到目标速率时说明已经饱和。
+ *
+ * 参数格式为key=value，例如：
+ * threads=1,2,4 rates=10000,50000,100000 warmup=3 duration=10 waiters=16 inventoryManagers=2 cooks=8 cookMicros=20 verbose=false
+ */
+public class LoadGenerator {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final double SATURATION_RATIO = 0.95;
+
+    private final int[] threadCounts;
+    private final int[] rates;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int waiters;
+    private final int inventoryManagers;
+    private final int cooks;
+    private final long cookNanos;
+    private final boolean verbose;
+
+    private LoadGenerator(Map<String, String> args) {
+        this.threadCounts = parseInts(args.getOrDefault("threads", "1,2,4"));
+        this.rates = parseInts(args.getOrDefault("rates", "10000,20000,50000,100000"));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("warmup", "3")));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("duration", "10")));
+        this.waiters = Integer.parseInt(args.getOrDefault("waiters", "16"));
+        this.inventoryManagers = Integer.parseInt(args.getOrDefault("inventoryManagers", "2"));
+        this.cooks = Integer.parseInt(args.getOrDefault("cooks", "8"));
+        this.cookNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(args.getOrDefault("cookMicros", "20")));
+        this.verbose = Boolean.parseBoolean(args.getOrDefault("verbose", "false"));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> map = new HashMap<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i <= 0) {
+                throw new IllegalArgumentException("Invalid argument: " + arg + ", expected key=value.");
+            }
+            map.put(arg.substring(0, i), arg.substring(i + 1));
+        }
+        new LoadGenerator(map).run();
+    }
+
+    private void run() throws InterruptedException {
+        System.out.printf("waiters=%d, inventoryManagers=%d, cooks=%d, cookMicros=%d, warmup=%ds, duration=%ds%n",
+                waiters, inventoryManagers, cooks, TimeUnit.NANOSECONDS.toMicros(cookNanos),
+                TimeUnit.NANOSECONDS.toSeconds(warmupNanos), TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+        for (int threadCount : threadCounts) {
+            System.out.printf("%nthreadCount=%d%n", threadCount);
+            System.out.printf("%10s %12s %10s %10s %10s %10s %10s %10s %12s %8s%n",
+                    "target/s", "achieved/s", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)", "p99*(us)", "errors", "");
+            for (int rate : rates) {
+                Result result = runOnce(threadCount, rate);
+                result.print();
+                if (verbose) {
+                    result.histogram.outputPercentileDistribution(System.out, 1000.0);
+                }
+            }
+        }
+    }
+
+    private Result runOnce(int threadCount, int rate) throws InterruptedException {
+        RestaurantTopology topology = new RestaurantTopology(waiters, inventoryManagers, cooks, cookNanos);
+        // 多个客户端分担响应的处理，避免客户端成为瓶颈
+        List<Actor> clients = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            clients.add(Actor.builder().addr("client-" + i).build());
+        }
+        List<Actor> actors = new ArrayList<>(clients);
+        actors.addAll(topology.getActors());
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActors(actors)
+                .threadCount(threadCount)
+                .name("load")
+                .build();
+
+        Recorder corrected = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        Recorder uncorrected = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        AtomicLong inFlight = new AtomicLong();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong lastCompletion = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+
+        double intervalNanos = 1_000_000_000.0 / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended - end >= 0) {
+                break;
+            }
+            long now = waitUntil(intended);
+            boolean measured = intended - measureStart >= 0;
+            int table = (int) (i & Integer.MAX_VALUE);
+            inFlight.incrementAndGet();
+            try {
+                clients.get(table % clients.size()).<Integer>sendThen(topology.waiterAddr(table), "placeOrder", table)
+                        .whenComplete((r, t) -> {
+                            long completeTime = System.nanoTime();
+                            if (measured) {
+                                if (null == t) {
+                                    corrected.recordValue(Math.min(completeTime - intended, HIGHEST_TRACKABLE_NANOS));
+                                    uncorrected.recordValue(Math.min(completeTime - now, HIGHEST_TRACKABLE_NANOS));
+                                    completed.incrementAndGet();
+                                    lastCompletion.accumulateAndGet(completeTime, Math::max);
+                                } else {
+                                    errors.incrementAndGet();
+                                }
+                            }
+                            inFlight.decrementAndGet();
+                        });
+            } catch (RuntimeException e) {
+                // 发件箱满了
+                inFlight.decrementAndGet();
+                if (measured) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+        // 等待所有请求完成
+        long drainDeadline = System.nanoTime() + HIGHEST_TRACKABLE_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() - drainDeadline < 0) {
+            Thread.sleep(10);
+        }
+        actorSystem.stop();
+
+        long elapsed = Math.max(lastCompletion.get(), end) - measureStart;
+        double achieved = completed.get() * 1_000_000_000.0 / elapsed;
+        return new Result(rate, achieved, corrected.getIntervalHistogram(), uncorrected.getIntervalHistogram(), errors.get());
+    }
+
+    // 等到计划的发送时间，返回实际的时间
+    private static long waitUntil(long intended) {
+        long now;
+        while ((now = System.nanoTime()) - intended < 0) {
+            long remaining = intended - now;
+            if (remaining > TimeUnit.MICROSECONDS.toNanos(100)) {
+                LockSupport.parkNanos(remaining - TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+        return now;
+    }
+
+    private static int[] parseInts(String s) {
+        String[] parts = s.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static class Result {
+        private final int target;
+        private final double achieved;
+        // 从计划发送时间开始计算的延迟
+        private final Histogram histogram;
+        // 从实际发送时间开始计算的延迟
+        private final Histogram uncorrected;
+        private final long errors;
+
+        private Result(int target, double achieved, Histogram histogram, Histogram uncorrected, long errors) {
+            this.target = target;
+            this.achieved = achieved;
+            this.histogram = histogram;
+            this.uncorrected = uncorrected;
+            this.errors = errors;
+        }
+
+        private void print() {
+            System.out.printf("%10d %12.0f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %12d %8s%n",
+                    target, achieved,
+                    micros(histogram.getValueAtPercentile(50)),
+                    micros(histogram.getValueAtPercentile(90)),
+                    micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)),
+                    micros(histogram.getMaxValue()),
+                    micros(uncorrected.getValueAtPercentile(99)),
+                    errors,
+                    achieved < target * SATURATION_RATIO ? "SATURATED" : "");
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1000.0;
+        }
+    }
+}
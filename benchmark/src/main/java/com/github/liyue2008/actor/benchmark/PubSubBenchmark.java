@@ -0,0 +1,62 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1对N广播：通过PubSubActor发布消息，每个消息投递给所有订阅者，吞吐量按发布的消息数量计算。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PubSubBenchmark {
+    private static final int BATCH = 100;
+
+    @Param({"1", "16", "128"})
+    public int subscribers;
+
+    private final AtomicLong received = new AtomicLong();
+    private long expected = 0L;
+    private Actor publisher;
+    private ActorSystem actorSystem;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        publisher = Actor.builder().addr("publisher").build();
+        List<Actor> actors = new ArrayList<>();
+        actors.add(publisher);
+        for (int i = 0; i < subscribers; i++) {
+            actors.add(Actor.builder().addr("subscriber-" + i)
+                    .addActorSubscriber("event", (Runnable) received::incrementAndGet)
+                    .build());
+        }
+        actorSystem = ActorSystem.builder()
+                .addActors(actors)
+                .threadCount(4)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void fanOut() {
+        for (int i = 0; i < BATCH; i++) {
+            publisher.pub("event");
+        }
+        expected += (long) BATCH * subscribers;
+        BenchmarkSupport.await(received, expected);
+    }
+}
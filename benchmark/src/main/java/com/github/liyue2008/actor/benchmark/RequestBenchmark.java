@@ -0,0 +1,52 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorSystem;
+import com.github.liyue2008.actor.BlockingWaitStrategy;
+import com.github.liyue2008.actor.BusySpinWaitStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sendThen请求响应的往返延迟：每次调用发送一个请求并等待响应。
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RequestBenchmark {
+
+    @Param({"blocking", "busySpin"})
+    public String waitStrategy;
+
+    private Actor client;
+    private ActorSystem actorSystem;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = Actor.builder().addr("client").build();
+        Actor server = Actor.builder().addr("server")
+                .<Integer, Integer>addActorListener("echo", i -> i)
+                .build();
+        actorSystem = ActorSystem.builder()
+                .addActor(client)
+                .addActor(server)
+                .waitStrategy("busySpin".equals(waitStrategy) ? new BusySpinWaitStrategy() : new BlockingWaitStrategy())
+                .threadCount(2)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Benchmark
+    public Integer pingPong() throws ExecutionException, InterruptedException {
+        return client.<Integer>sendThen("server", "echo", 1).get();
+    }
+}
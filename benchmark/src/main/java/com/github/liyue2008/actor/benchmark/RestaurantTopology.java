@@ -0,0 +1,113 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorMsg;
+import com.github.liyue2008.actor.annotation.ActorListener;
+import com.github.liyue2008.actor.annotation.ActorMessage;
+import com.github.liyue2008.actor.annotation.ResponseManually;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 放大的番茄炒蛋餐厅，参考example中的EggTomatoRestaurant：
+ * 服务员收到点餐请求后，先向库存管理员扣减库存，再交给厨师烹饪，烹饪完成后回复点餐请求。
+ * 厨师的烹饪用忙等待模拟，不打印日志。
+ */
+class RestaurantTopology {
+    private final List<Actor> actors = new ArrayList<>();
+    private final int waiters;
+
+    RestaurantTopology(int waiters, int inventoryManagers, int cooks, long cookNanos) {
+        this.waiters = waiters;
+        for (int i = 0; i < waiters; i++) {
+            actors.add(new Waiter(i, inventoryManagers, cooks).actor);
+        }
+        for (int i = 0; i < inventoryManagers; i++) {
+            actors.add(new InventoryManager(i).actor);
+        }
+        for (int i = 0; i < cooks; i++) {
+            actors.add(new Cook(i, cookNanos).actor);
+        }
+    }
+
+    List<Actor> getActors() {
+        return actors;
+    }
+
+    /**
+     * 负责某一桌的服务员地址
+     */
+    String waiterAddr(int table) {
+        return "waiter-" + (table % waiters);
+    }
+
+    static class Waiter {
+        private final Actor actor;
+        private final int inventoryManagers;
+        private final int cooks;
+
+        Waiter(int index, int inventoryManagers, int cooks) {
+            this.inventoryManagers = inventoryManagers;
+            this.cooks = cooks;
+            this.actor = Actor.builder().addr("waiter-" + index).setHandlerInstance(this).build();
+        }
+
+        @ActorListener
+        @ResponseManually
+        void placeOrder(@ActorMessage ActorMsg msg) {
+            int table = (Integer) msg.getPayload();
+            actor.<Boolean>sendThen("inventory-manager-" + (table % inventoryManagers), "deduct", 1)
+                    .thenCompose(success -> success ?
+                            actor.<Integer>sendThen("cook-" + (table % cooks), "cook", table) :
+                            CompletableFuture.completedFuture(-1))
+                    .whenComplete((result, throwable) -> {
+                        if (null == throwable) {
+                            actor.reply(msg, result);
+                        } else {
+                            actor.replyException(msg, throwable);
+                        }
+                    });
+        }
+    }
+
+    static class InventoryManager {
+        private static final int RESTOCK = 1_000_000;
+        private final Actor actor;
+        private int eggs = RESTOCK;
+
+        InventoryManager(int index) {
+            this.actor = Actor.builder().addr("inventory-manager-" + index).setHandlerInstance(this).build();
+        }
+
+        @ActorListener
+        Boolean deduct(Integer count) {
+            if (eggs < count) {
+                // 库存不是压测的对象，用完就补货
+                eggs = RESTOCK;
+            }
+            eggs -= count;
+            return true;
+        }
+    }
+
+    static class Cook {
+        private final Actor actor;
+        private final long cookNanos;
+
+        Cook(int index, long cookNanos) {
+            this.cookNanos = cookNanos;
+            this.actor = Actor.builder().addr("cook-" + index).setHandlerInstance(this).build();
+        }
+
+        @ActorListener
+        Integer cook(Integer table) {
+            long deadline = System.nanoTime() + cookNanos;
+            while (System.nanoTime() - deadline < 0) {
+                // 模拟烹饪时间
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时任务的触发开销。
+ * 使用虚拟时间的ActorSystem，不需要真正等待定时任务到期：每次调用推进1秒虚拟时间，
+ * 每个Actor有一个1毫秒的定时任务，即每次调用触发 actors * 1000 次定时任务。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+    @Param({"1", "16", "64"})
+    public int actors;
+
+    private long ticks = 0L;
+    private ActorSystem actorSystem;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Actor> actorList = new ArrayList<>();
+        for (int i = 0; i < actors; i++) {
+            actorList.add(Actor.builder().addr("actor-" + i)
+                    .addScheduler(1, TimeUnit.MILLISECONDS, () -> ticks++)
+                    .build());
+        }
+        actorSystem = ActorSystem.builder()
+                .addActors(actorList)
+                .virtualTime(0L)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Benchmark
+    public long fire() {
+        actorSystem.runFor(1, TimeUnit.SECONDS);
+        return ticks;
+    }
+}
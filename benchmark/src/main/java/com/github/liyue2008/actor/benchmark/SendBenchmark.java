@@ -0,0 +1,63 @@
+package com.github.liyue2008.actor.benchmark;
+
+import com.github.liyue2008.actor.Actor;
+import com.github.liyue2008.actor.ActorDispatchMode;
+import com.github.liyue2008.actor.ActorSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单向发送的吞吐量：一个发送者向一个接收者发送消息，每次调用发送一批消息，等待全部处理完成。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SendBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"SCAN", "READY_QUEUE"})
+    public ActorDispatchMode dispatchMode;
+
+    @Param({"false", "true"})
+    public boolean directDelivery;
+
+    private final AtomicLong received = new AtomicLong();
+    private long expected = 0L;
+    private Actor sender;
+    private ActorSystem actorSystem;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sender = Actor.builder().addr("sender").build();
+        Actor receiver = Actor.builder().addr("receiver")
+                .addActorListener("oneWay", (Runnable) received::incrementAndGet)
+                .build();
+        actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .dispatchMode(dispatchMode)
+                .directDelivery(directDelivery)
+                .threadCount(2)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void oneWay() {
+        for (int i = 0; i < BATCH; i++) {
+            sender.send("receiver", "oneWay");
+        }
+        expected += BATCH;
+        BenchmarkSupport.await(received, expected);
+    }
+}
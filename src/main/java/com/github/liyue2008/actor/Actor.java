@@ -27,6 +27,12 @@ public class Actor {
     private final ActorResponseSupport responseSupport;
 
     private final boolean enableMetric;
+    // 按主题统计的耗时，没有开启指标收集时为null
+    private final ActorLatencyStats latencyStats;
+
+    // 每轮最多处理的消息数量和最长处理时间，小于0表示使用ActorSystem的默认值
+    private final int throughput;
+    private final long timeSliceNanos;
 
     /**
      * 判断Actor是否使用私有线程
@@ -39,13 +45,38 @@ public class Actor {
     // 是否独占线程，独占线程有更好的性能
     private final boolean privateThread;
 
-    private Actor(String addr, int inboxCapacity, int outboxCapacity, Map<String, Integer> topicQueueMap, boolean privateThread, boolean enableMetric) {
+    // 执行runDelay任务的定时器，加入ActorSystem时设置
+    private volatile ActorTimer timer = null;
+    // 加入ActorSystem之前添加的延迟任务
+    private final List<PendingDelay> pendingDelays = new ArrayList<>();
+
+    private Actor(String addr, int inboxCapacity, int outboxCapacity, Map<String, Integer> topicQueueMap, boolean privateThread, boolean enableMetric, ActorQueueType inboxQueueType, int throughput, long timeSliceNanos) {
         this.addr = addr;
         this.outbox = new ActorOutbox(outboxCapacity, addr, topicQueueMap, enableMetric);
-        this.inbox = new ActorInbox(inboxCapacity, addr, topicQueueMap, outbox);
+        this.inbox = new ActorInbox(inboxCapacity, addr, topicQueueMap, outbox, inboxQueueType);
         this.responseSupport = new ActorResponseSupport(inbox, outbox);
         this.privateThread = privateThread;
         this.enableMetric = enableMetric;
+        this.latencyStats = enableMetric ? new ActorLatencyStats(addr) : null;
+        if (enableMetric) {
+            outbox.setLatencyStats(latencyStats);
+            inbox.setLatencyStats(latencyStats);
+        }
+        this.throughput = throughput;
+        this.timeSliceNanos = timeSliceNanos;
+        applyTurn(Math.max(1, throughput), Math.max(0L, timeSliceNanos));
+    }
+
+    /**
+     * 没有在Actor.Builder中设置每轮处理的消息数量和时间片时，使用ActorSystem的默认值
+     */
+    void applyDefaultTurn(int defaultThroughput, long defaultTimeSliceNanos) {
+        applyTurn(throughput < 0 ? defaultThroughput : throughput, timeSliceNanos < 0 ? defaultTimeSliceNanos : timeSliceNanos);
+    }
+
+    private void applyTurn(int throughput, long timeSliceNanos) {
+        inbox.setTurn(throughput, timeSliceNanos);
+        outbox.setTurn(throughput, timeSliceNanos);
     }
 
     /**
@@ -57,6 +88,15 @@ public class Actor {
         return inbox.getQueueSize(topic);
     }
 
+    /**
+     * 获取发件箱中指定主题的队列大小
+     * @param topic 主题
+     * @return 队列中的消息数量
+     */
+    public int getOutboxQueueSize(String topic) {
+        return outbox.getQueueSize(topic);
+    }
+
     /**
      * 获取Actor地址
      * @return 地址
@@ -142,29 +182,108 @@ public class Actor {
      * @param runnable 要执行的任务
      */
     public void addActorScheduler(long interval, TimeUnit timeUnit,Runnable runnable) {
+        addActorScheduler(interval, timeUnit, false, runnable);
+    }
+
+    /**
+     * 添加定时任务
+     * @param interval 时间间隔
+     * @param timeUnit 时间单位
+     * @param coalesce 是否合并定时消息，为true时如果上一次的任务还没有执行，不再发送新的定时消息
+     * @param runnable 要执行的任务
+     */
+    public void addActorScheduler(long interval, TimeUnit timeUnit, boolean coalesce, Runnable runnable) {
         String topic = runnable.getClass().getName() + "#run()";
-        addActorScheduler( new ScheduleTask(timeUnit, interval, this.addr, topic), runnable);
+        addActorScheduler(new ScheduleTask(timeUnit, interval, this.addr, topic, coalesce, false), runnable);
+    }
+
+    /**
+     * 添加定时任务，任务的参数是上一次执行之后因为合并而错过的次数
+     * @param interval 时间间隔
+     * @param timeUnit 时间单位
+     * @param coalesce 是否合并定时消息，为true时如果上一次的任务还没有执行，不再发送新的定时消息
+     * @param onTick 要执行的任务
+     */
+    public void addActorScheduler(long interval, TimeUnit timeUnit, boolean coalesce, LongConsumer onTick) {
+        String topic = onTick.getClass().getName() + "#accept(long)";
+        addActorScheduler(new ScheduleTask(timeUnit, interval, this.addr, topic, coalesce, true), onTick);
     }
 
-    private void addActorScheduler(ScheduleTask scheduleTask, Runnable runnable) {
-        inbox.receive(new ActorMsg(0L, addr,addr,"@addActorListener", scheduleTask.getTopic(), runnable));
+    private void addActorScheduler(ScheduleTask scheduleTask, Object listener) {
+        inbox.receive(new ActorMsg(0L, addr,addr,"@addActorListener", scheduleTask.getTopic(), listener));
         send("Scheduler", "addTask", scheduleTask);
     }
 
     private void addActorScheduler(SchedulerRequest request) {
-        addActorScheduler(request.getInterval(), request.getTimeUnit(), request.getRunnable());
+        if (request.getListener() instanceof LongConsumer) {
+            addActorScheduler(request.getInterval(), request.getTimeUnit(), request.isCoalesce(), (LongConsumer) request.getListener());
+        } else {
+            addActorScheduler(request.getInterval(), request.getTimeUnit(), request.isCoalesce(), (Runnable) request.getListener());
+        }
     }
 
     /**
-     * 延迟执行任务
+     * 延迟执行任务，任务到期后在Actor的线程中执行。
+     * 每个任务直接放入定时器的时间轮，不需要注册消息处理方法，可以同时有大量未到期的任务。
+     * 在Actor加入ActorSystem之前调用的，从加入时开始计时。
      * @param delay 延迟时间
      * @param timeUnit 时间单位
      * @param runnable 要执行的任务
+     * @return 可以取消的任务
      */
-    public void runDelay(long delay, TimeUnit timeUnit,  Runnable runnable) {
-        String topic = runnable.getClass().getName() + "#run()";
-        inbox.receive(new ActorMsg(0L, addr,addr,"@addActorListener", topic, runnable));
-        send("Scheduler", "addDelayTask", new DelayTask(timeUnit, delay, this.addr, topic));
+    public TimerHandle runDelay(long delay, TimeUnit timeUnit,  Runnable runnable) {
+        TimerHandle handle = new TimerHandle(runnable);
+        synchronized (this) {
+            if (null == timer) {
+                pendingDelays.add(new PendingDelay(handle, delay, timeUnit));
+                return handle;
+            }
+        }
+        scheduleDelay(handle, delay, timeUnit);
+        return handle;
+    }
+
+    private void scheduleDelay(TimerHandle handle, long delay, TimeUnit timeUnit) {
+        timer.start();
+        handle.setTimerTask(timer.schedule(t -> deliverDelay(handle), delay, 0L, timeUnit));
+    }
+
+    // 在定时器线程中执行，收件箱满了时在下一个tick重试，直到放入收件箱或者任务被取消
+    private void deliverDelay(TimerHandle handle) {
+        if (handle.isDone()) {
+            return;
+        }
+        try {
+            inbox.receive(new ActorMsg(0L, addr, addr, "@runDelay", handle));
+        } catch (IllegalStateException e) {
+            handle.setTimerTask(timer.schedule(t -> deliverDelay(handle), timer.getTickNanos(), 0L, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * 加入ActorSystem时设置定时器，调度之前通过runDelay添加的任务和请求的超时
+     */
+    void attachTimer(ActorTimer timer) {
+        List<PendingDelay> delays;
+        synchronized (this) {
+            this.timer = timer;
+            delays = new ArrayList<>(pendingDelays);
+            pendingDelays.clear();
+        }
+        delays.forEach(d -> scheduleDelay(d.handle, d.delay, d.timeUnit));
+        responseSupport.attachTimer(timer);
+    }
+
+    private static class PendingDelay {
+        private final TimerHandle handle;
+        private final long delay;
+        private final TimeUnit timeUnit;
+
+        private PendingDelay(TimerHandle handle, long delay, TimeUnit timeUnit) {
+            this.handle = handle;
+            this.delay = delay;
+            this.timeUnit = timeUnit;
+        }
     }
 
     /**
@@ -176,6 +295,16 @@ public class Actor {
         inbox.receive(new ActorMsg(0L, addr,addr,"@removeActorListener", topic, runnable));
         send("Scheduler", "removeTask", addr, topic);
     }
+
+    /**
+     * 移除定时任务
+     * @param onTick 要移除的任务
+     */
+    public void removeScheduler(LongConsumer onTick) {
+        String topic = onTick.getClass().getName() + "#accept(long)";
+        inbox.receive(new ActorMsg(0L, addr,addr,"@removeActorListener", topic, onTick));
+        send("Scheduler", "removeTask", addr, topic);
+    }
     /**
      * 设置默认消息处理函数。所有未处理的消息都由这个函数处理。
      * @param handler 默认的消息处理函数
@@ -341,6 +470,37 @@ public class Actor {
         return responseSupport.send(addr, topic, rejectPolicy, payloads);
     }
 
+    /**
+     * 异步发送消息并返回CompletableFuture，超时未收到响应时以TimeoutException异常结束。
+     * 超时由ActorSystem的定时器计时，精度是一个tick；在Actor加入ActorSystem之前调用的，从加入时开始计时。
+     * 取消返回的CompletableFuture不再等待响应。
+     * @param addr 目标地址
+     * @param topic 消息主题
+     * @param timeout 超时时间，小于等于0表示不超时
+     * @param timeUnit 超时时间单位
+     * @param payloads 消息内容
+     * @param <T> 返回值类型
+     * @return 异步操作的CompletableFuture
+     */
+    public <T> CompletableFuture<T> sendThenWithTimeout(String addr, String topic, long timeout, TimeUnit timeUnit, Object... payloads) {
+        return sendThenWithTimeout(addr, topic, timeout, timeUnit, ActorRejectPolicy.EXCEPTION, payloads);
+    }
+
+    /**
+     * 异步发送消息并指定超时时间、拒绝策略和消息内容
+     * @param addr 目标地址
+     * @param topic 消息主题
+     * @param timeout 超时时间，小于等于0表示不超时
+     * @param timeUnit 超时时间单位
+     * @param rejectPolicy 拒绝策略
+     * @param payloads 消息内容
+     * @param <T> 返回值类型
+     * @return 异步操作的CompletableFuture
+     */
+    public <T> CompletableFuture<T> sendThenWithTimeout(String addr, String topic, long timeout, TimeUnit timeUnit, ActorRejectPolicy rejectPolicy, Object... payloads) {
+        return responseSupport.send(addr, topic, timeout, timeUnit, rejectPolicy, payloads);
+    }
+
     private void addTopicResponseHandlerFunction(String topic, Consumer<ActorMsg> handler) {
         responseSupport.addTopicHandlerFunction(topic, handler);
     }
@@ -372,6 +532,14 @@ public class Actor {
 
     }
 
+    /**
+     * 获取等待响应的请求数量
+     * @return 通过sendThen发送，还没有收到响应的请求数量
+     */
+    public int getPendingResponses() {
+        return responseSupport.getPendingResponses();
+    }
+
     ActorInbox getInbox() {
         return inbox;
     }
@@ -404,6 +572,31 @@ public class Actor {
         return enableMetric;
     }
 
+    /**
+     * 按主题统计的各个阶段的耗时。
+     * 需要开启指标收集：发件箱等待时间统计在发送者，其它阶段统计在收件人，只统计开启了指标收集的Actor发出的消息。
+     * @return 所有有数据的主题和阶段，没有开启指标收集时返回空列表
+     */
+    public List<LatencySnapshot> getLatencySnapshots() {
+        return getLatencySnapshots(false);
+    }
+
+    /**
+     * 按主题统计的各个阶段的耗时
+     * @param reset 是否在读取的同时清零，用于按时间段统计
+     * @return 所有有数据的主题和阶段，没有开启指标收集时返回空列表
+     */
+    public List<LatencySnapshot> getLatencySnapshots(boolean reset) {
+        return null == latencyStats ? Collections.emptyList() : latencyStats.snapshot(reset);
+    }
+
+    /**
+     * 清零耗时统计
+     */
+    public void resetLatencies() {
+        getLatencySnapshots(true);
+    }
+
     // Builder
     public static class Builder {
         private String addr;
@@ -427,6 +620,9 @@ public class Actor {
         private Consumer<ActorMsg> defaultResponseHandlerFunction = null;
         private boolean privateThread = false;
         private boolean enableMetric = false;
+        private ActorQueueType inboxQueueType = ActorQueueType.LINKED;
+        private int throughput = -1;
+        private long timeSliceNanos = -1L;
         private Builder() {}
 
 
@@ -511,6 +707,41 @@ public class Actor {
             return this;
         }
 
+        /**
+         * 设置收件箱队列的实现类型，默认为LINKED。
+         * 多个发送者向同一个Actor发送大量消息时，使用MPSC_ARRAY可以减少锁竞争和内存分配，
+         * 但是每个队列在创建时就会按容量分配数组。
+         * @param inboxQueueType 收件箱队列的实现类型
+         * @return Builder
+         */
+        public Builder inboxQueueType(ActorQueueType inboxQueueType) {
+            this.inboxQueueType = inboxQueueType;
+            return this;
+        }
+
+        /**
+         * 设置每轮最多处理的消息数量，不设置时使用ActorSystem的默认值。
+         * 繁忙的Actor每轮可以批量处理多个消息，减少线程调度的开销；为1时每轮从每个队列中处理一个消息。
+         * @param throughput 每轮最多处理的消息数量
+         * @return Builder
+         */
+        public Builder throughput(int throughput) {
+            this.throughput = throughput;
+            return this;
+        }
+
+        /**
+         * 设置每轮最长的处理时间，不设置时使用ActorSystem的默认值，只在throughput大于1时生效。
+         * 避免批量处理时一个Actor长时间占用线程。
+         * @param timeSlice 每轮最长的处理时间，0表示不限制
+         * @param timeUnit 时间单位
+         * @return Builder
+         */
+        public Builder timeSlice(long timeSlice, TimeUnit timeUnit) {
+            this.timeSliceNanos = timeUnit.toNanos(timeSlice);
+            return this;
+        }
+
         public Builder addTopicQueue(String topic) {
             this.topicQueueMap.put(topic, -1);
             return this;
@@ -531,13 +762,24 @@ public class Actor {
         }
 
         public Builder addScheduler(long interval, TimeUnit timeUnit, Runnable runnable) {
+            return addScheduler(interval, timeUnit, false, runnable);
+        }
+
+        public Builder addScheduler(long interval, TimeUnit timeUnit, boolean coalesce, Runnable runnable) {
             this.schedulerRequestList.add(
-                    new SchedulerRequest(interval, timeUnit, runnable)
+                    new SchedulerRequest(interval, timeUnit, coalesce, runnable)
+            );
+            return this;
+        }
+
+        public Builder addScheduler(long interval, TimeUnit timeUnit, boolean coalesce, LongConsumer onTick) {
+            this.schedulerRequestList.add(
+                    new SchedulerRequest(interval, timeUnit, coalesce, onTick)
             );
             return this;
         }
         public Actor build() {
-            Actor actor = new Actor(addr, inboxCapacity, outBoxCapacity, topicQueueMap, privateThread, enableMetric);
+            Actor actor = new Actor(addr, inboxCapacity, outBoxCapacity, topicQueueMap, privateThread, enableMetric, inboxQueueType, throughput, timeSliceNanos);
             this.topicHandlerRunnableMap.forEach(actor::addActorListener);
             this.topicHandlerSupplierMap.forEach(actor::addActorListener);
             this.topicHandlerFunctionMap.forEach(actor::addActorListener);
@@ -582,12 +824,15 @@ public class Actor {
     private static class SchedulerRequest {
         private final long interval;
         private final TimeUnit timeUnit;
-        private final Runnable runnable;
+        private final boolean coalesce;
+        // Runnable或者LongConsumer
+        private final Object listener;
 
-        public SchedulerRequest(long interval, TimeUnit timeUnit, Runnable runnable) {
+        public SchedulerRequest(long interval, TimeUnit timeUnit, boolean coalesce, Object listener) {
             this.interval = interval;
             this.timeUnit = timeUnit;
-            this.runnable = runnable;
+            this.coalesce = coalesce;
+            this.listener = listener;
         }
 
         public long getInterval() {
@@ -598,11 +843,14 @@ public class Actor {
             return timeUnit;
         }
 
-        public Runnable getRunnable() {
-            return runnable;
+        public boolean isCoalesce() {
+            return coalesce;
+        }
+
+        public Object getListener() {
+            return listener;
         }
     }
 
 }
 
-
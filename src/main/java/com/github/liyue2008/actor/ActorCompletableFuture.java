@@ -6,6 +6,11 @@ import java.util.concurrent.ExecutionException;
 public class ActorCompletableFuture<T> extends CompletableFuture<T> {
     private final static ThreadLocal<ActorThreadContext> contextThreadLocal = new ThreadLocal<>();
 
+    // 取消请求的超时定时任务，没有设置超时为null
+    private volatile Runnable timeoutCanceller;
+    // 取消时调用，用于清理等待响应的请求
+    private volatile Runnable cancelHook;
+
     @Override
     public T get() throws InterruptedException, ExecutionException {
         checkThread();
@@ -24,4 +29,35 @@ public class ActorCompletableFuture<T> extends CompletableFuture<T> {
         checkThread();
         return super.join();
     }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            cancelTimeout();
+            Runnable hook = cancelHook;
+            if (null != hook) {
+                hook.run();
+            }
+        }
+        return cancelled;
+    }
+
+    void setTimeout(TimerTask timerTask) {
+        this.timeoutCanceller = timerTask::cancel;
+    }
+
+    void setCancelHook(Runnable cancelHook) {
+        this.cancelHook = cancelHook;
+    }
+
+    /**
+     * 收到响应后取消超时的定时任务
+     */
+    void cancelTimeout() {
+        Runnable canceller = timeoutCanceller;
+        if (null != canceller) {
+            canceller.run();
+        }
+    }
 }
@@ -0,0 +1,10 @@
+package com.github.liyue2008.actor;
+
+/**
+ * ActorThread 调度Actor的方式
+ */
+public enum ActorDispatchMode {
+    SCAN, // 每轮遍历线程负责的所有收件箱和发件箱
+    READY_QUEUE, // 收件箱或发件箱有消息时将Actor放入就绪队列，每轮只处理就绪的Actor
+    WORK_STEALING // 在READY_QUEUE的基础上，空闲的ActorThread从其它ActorThread的就绪队列中窃取Actor
+}
@@ -0,0 +1,26 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 编译期生成的消息分发器。
+ * 注解处理器为每个带有{@link com.github.liyue2008.actor.annotation.ActorListener}等注解的类生成一个名为
+ * <code>类名$$ActorDispatcher</code>的实现，设置收消息的对象时如果存在对应的分发器，
+ * 使用分发器中的方法描述代替反射扫描，调用方法时直接调用，不再使用反射或者MethodHandle。
+ * 应用代码不需要直接使用这个接口。
+ */
+public interface ActorDispatcher {
+
+    /**
+     * 类中声明的所有方法，按序号排列
+     */
+    DispatchMethod[] methods();
+
+    /**
+     * 调用方法
+     * @param instance 收消息的对象，静态方法忽略
+     * @param index 方法的序号
+     * @param args 参数
+     * @return 方法的返回值，void方法返回null
+     * @throws Throwable 方法抛出的异常
+     */
+    Object dispatch(Object instance, int index, Object[] args) throws Throwable;
+}
@@ -0,0 +1,78 @@
+package com.github.liyue2008.actor;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * 查找并缓存编译期生成的分发器，以及用分发器创建消息处理方法。
+ */
+class ActorDispatchers {
+    static final String SUFFIX = "$$ActorDispatcher";
+    private static final ActorDispatcher NO_DISPATCHER = new ActorDispatcher() {
+        @Override
+        public DispatchMethod[] methods() {
+            return new DispatchMethod[0];
+        }
+
+        @Override
+        public Object dispatch(Object instance, int index, Object[] args) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private static final ClassValue<ActorDispatcher> DISPATCHERS = new ClassValue<ActorDispatcher>() {
+        @Override
+        protected ActorDispatcher computeValue(Class<?> type) {
+            try {
+                Class<?> dispatcherClass = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+                if (ActorDispatcher.class.isAssignableFrom(dispatcherClass)) {
+                    return (ActorDispatcher) dispatcherClass.getDeclaredConstructor().newInstance();
+                }
+            } catch (ClassNotFoundException ignored) {
+                // 没有生成分发器
+            } catch (ReflectiveOperationException | LinkageError e) {
+                throw new IllegalStateException("Can not create dispatcher for: " + type.getName(), e);
+            }
+            return NO_DISPATCHER;
+        }
+    };
+
+    /**
+     * 获取类对应的分发器
+     * @return 分发器，没有生成分发器的类返回null
+     */
+    static ActorDispatcher get(Class<?> type) {
+        ActorDispatcher dispatcher = DISPATCHERS.get(type);
+        return dispatcher == NO_DISPATCHER ? null : dispatcher;
+    }
+
+    /**
+     * 用分发器中的方法描述创建消息处理方法，按主题分组，和{@link ActorUtils#scanActionListeners}的结果相同。
+     * @param annotations 只包括带有这些注解的方法，为null时包括所有方法
+     */
+    static Map<String, List<InvocationTarget>> scan(Object instance, ActorDispatcher dispatcher, Collection<Class<? extends Annotation>> annotations) {
+        Map<String, List<InvocationTarget>> map = new HashMap<>();
+        for (DispatchMethod method : dispatcher.methods()) {
+            if (null != annotations && !annotations.contains(method.getAnnotation())) {
+                continue;
+            }
+            InvocationTarget target;
+            if (method.isDispatchable()) {
+                target = new InvocationTarget(instance, dispatcher, method);
+            } else {
+                target = new InvocationTarget(instance, getDeclaredMethod(instance.getClass(), method));
+            }
+            map.computeIfAbsent(method.getTopic(), t -> new LinkedList<>()).add(target);
+        }
+        return map;
+    }
+
+    private static Method getDeclaredMethod(Class<?> type, DispatchMethod method) {
+        try {
+            return type.getDeclaredMethod(method.getName(), method.parameterTypes());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Dispatcher is out of date: " + type.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.liyue2008.actor;
+
+/**
+ * JFR事件的开关。
+ * 事件默认关闭，只有在录制的配置中开启了对应的事件时才会产生，例如：
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start settings=actor.jfc
+ * </pre>
+ * 其中actor.jfc开启了com.github.liyue2008.actor.Send等事件。
+ * 录制开始或结束时更新开关，热路径上只读取一个volatile字段，没有录制时几乎没有开销。
+ * 运行时不支持JFR时，所有开关保持关闭。
+ * 事件的定义见{@link ActorJfrEvents}。
+ */
+final class ActorEvents {
+    static volatile boolean sendEnabled = false;
+    static volatile boolean dispatchEnabled = false;
+    static volatile boolean handlerEnabled = false;
+    static volatile boolean responseEnabled = false;
+    static volatile boolean schedulerEnabled = false;
+    static volatile boolean stuckHandlerEnabled = false;
+
+    static {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            ActorJfrEvents.install();
+        } catch (Throwable ignored) {
+            // 运行时不支持JFR
+        }
+    }
+
+    private ActorEvents() {}
+}
@@ -3,14 +3,11 @@ package com.github.liyue2008.actor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.liyue2008.actor.annotation.*;
-
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.*;
 import java.util.stream.Collectors;
 
@@ -18,6 +15,8 @@ class ActorInbox {
     private static final Logger logger = LoggerFactory.getLogger( ActorInbox.class );
     // 显式注册的收消息方法
     private final Map<String /* topic */, List<InvocationTarget>> actorListeners;
+    // 按主题缓存的方法匹配结果，主题的收消息方法变化时删除
+    private final Map<String /* topic */, InvocationTargetCache> invocationTargetCaches = new ConcurrentHashMap<>();
 
     // 兜底处理所有未被处理消息的方法
     private Consumer<ActorMsg> defaultHandlerFunction;
@@ -32,12 +31,25 @@ class ActorInbox {
     private final Map<String, BlockingQueue<ActorMsg>> topicQueueMap;
 
     // 收到消息后，通知邮递员派送消息的响铃
-    private Object ring;
+    private Runnable ring;
+    // 开启指标收集时按主题统计耗时，否则为null
+    private ActorLatencyStats latencyStats = null;
+    private final MailboxCounters counters = new MailboxCounters();
 
     private final int defaultCapacity;
 
-    ActorInbox(int defaultCapacity, String myAddr, Map<String, Integer> topicQueueMap, ActorOutbox outbox) {
+    private final ActorQueueType queueType;
+
+    // 每轮最多处理的消息数量，为1时每轮从每个队列中处理一个消息
+    private int throughput = 1;
+    // 每轮最长的处理时间，0表示不限制，只在throughput大于1时生效
+    private long timeSliceNanos = 0L;
+    // 下一轮开始处理的队列位置，轮流从各个队列开始，避免排在后面的队列饿死
+    private int cursor = 0;
+
+    ActorInbox(int defaultCapacity, String myAddr, Map<String, Integer> topicQueueMap, ActorOutbox outbox, ActorQueueType queueType) {
         this.defaultCapacity = defaultCapacity;
+        this.queueType = queueType;
         this.myAddr = myAddr;
         this.outbox = outbox;
         this.defaultHandlerFunction = null;
@@ -45,7 +57,7 @@ class ActorInbox {
         this.topicQueueMap = new ConcurrentHashMap<>();
         if (null != topicQueueMap) {
             for (Map.Entry<String, Integer> entry : topicQueueMap.entrySet()) {
-                this.topicQueueMap.put(entry.getKey(), new LinkedBlockingQueue<>(entry.getValue() < 0 ? defaultCapacity : entry.getValue()));
+                this.topicQueueMap.put(entry.getKey(), queueType.newQueue(entry.getValue() < 0 ? defaultCapacity : entry.getValue()));
             }
         }
     }
@@ -58,7 +70,9 @@ class ActorInbox {
     List<ScheduleTask> getSchedulers() {
         return this.actorListeners.values().stream().flatMap(Collection::stream)
                 .filter(t -> t.getType() == InvocationTarget.TargetType.SCHEDULER)
-                .map(t -> new ScheduleTask(t.getTimeUnit(), t.getInterval(), getMyAddr(), t.getTopic())).collect(Collectors.toList());
+                .map(t -> new ScheduleTask(t.getTimeUnit(), t.getInterval(), getMyAddr(), t.getTopic(), t.isCoalesce(),
+                        t.isCoalesce() && t.getParameterCount() == 1))
+                .collect(Collectors.toList());
     }
 
 
@@ -93,6 +107,14 @@ class ActorInbox {
         }
     }
 
+    void addActorListener(String topic, LongConsumer consumer) {
+        try {
+            addActorListener(topic, consumer, consumer.getClass().getDeclaredMethod("accept", long.class));
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 
     <T> void addActorListener(String topic, Consumer<T> consumer, Class<T> tClass) {
         try {
@@ -121,23 +143,20 @@ class ActorInbox {
     void addActorListener(String topic, Object instance, Method method) {
         List<InvocationTarget> targets = actorListeners.computeIfAbsent(topic, k -> new LinkedList<>());
         targets.add(new InvocationTarget(instance, method));
+        invocationTargetCaches.remove(topic);
     }
 
-    void removeActorListener(String topic, Runnable runnable) {
+    void removeActorListener(String topic, Object listener) {
         List<InvocationTarget> targets = actorListeners.get(topic);
         if (targets == null) {
             return;
         }
-        targets.removeIf(target -> {
-            try {
-                return target.getMethod().equals(runnable.getClass().getDeclaredMethod("run"));
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        // 删除同一个类的实例注册的方法
+        targets.removeIf(target -> target.getTarget().getClass() == listener.getClass());
         if (targets.isEmpty()) {
             actorListeners.remove(topic);
         }
+        invocationTargetCaches.remove(topic);
     }
 
 
@@ -168,6 +187,7 @@ class ActorInbox {
     void addActorSubscriber(String topic, Object instance, Method method) {
         List<InvocationTarget> targets = actorListeners.computeIfAbsent(topic, k -> new LinkedList<>());
         targets.add(new InvocationTarget(instance, method, InvocationTarget.TargetType.SUBSCRIBER, topic));
+        invocationTargetCaches.remove(topic);
     }
 
     void setDefaultHandlerFunction(Consumer<ActorMsg> handlerFunction) {
@@ -177,6 +197,7 @@ class ActorInbox {
     void setHandlerInstance(Object handlerInstance) {
         this.handlerInstance = handlerInstance;
         AddAllToActorListener(scanAllMethods());
+        invocationTargetCaches.clear();
 
     }
 
@@ -185,6 +206,10 @@ class ActorInbox {
     }
 
     private Map<String, List<InvocationTarget>> scanAllMethods() {
+        ActorDispatcher dispatcher = ActorDispatchers.get(this.handlerInstance.getClass());
+        if (null != dispatcher) {
+            return ActorDispatchers.scan(handlerInstance, dispatcher, null);
+        }
         return Arrays.stream(this.handlerInstance.getClass().getDeclaredMethods())
                 .filter(m -> !m.getDeclaringClass().equals(Object.class))
                 .reduce(new HashMap<>(), (map, method) -> {
@@ -202,77 +227,46 @@ class ActorInbox {
                 .collect(Collectors.toSet());
     }
 
-    private void tryInvoke(InvocationTarget invocationTarget, ActorMsg msg) throws IllegalAccessException {
+    private void tryInvoke(InvocationTarget invocationTarget, ActorMsg msg) {
         if (invocationTarget != null) {
-            Object instance = invocationTarget.getTarget();
-            Method method = invocationTarget.getMethod();
             Object ret;
             try {
-                if (method.getParameterCount() == 1 && method.getParameters()[0].isAnnotationPresent(ActorMessage.class)) {
-                    // 优先看参数个数是否是1，且带有@ActorMessage注解
-                    method.setAccessible(true);
-                    ret = method.invoke(instance, msg);
-                } else {
-                    method.setAccessible(true);
-                    ret = method.invoke(instance, msg.getPayloads());
-                }
-                if (needResponse(msg, method)) {
+                ret = invocationTarget.invoke(msg);
+                if (invocationTarget.needResponse(msg)) {
                     this.outbox.send(this.outbox.createResponse(msg, ret, null));
                 }
             } catch (InvocationTargetException ite) {
-                if (needResponse(msg, method)) {
+                if (invocationTarget.needResponse(msg)) {
                     this.outbox.send(this.outbox.createResponse(msg, null, ite.getCause()));
                 }
-                logger.info("Invoke message handler exception, handler: {}, msg: {}, exception: ", instance.getClass().getName() + "." + method.getName() + "(...)", msg, ite.getTargetException());
+                logger.info("Invoke message handler exception, handler: {}, msg: {}, exception: ", handlerName(invocationTarget), msg, ite.getTargetException());
             } catch (IllegalArgumentException e) {
-                if (needResponse(msg, method)) {
+                if (invocationTarget.needResponse(msg)) {
                     this.outbox.send(this.outbox.createResponse(msg, null, e));
                 }
-                logger.info("Invoke message handler failed, cause: illegal argument, handler: {}, msg: {}.", instance.getClass().getName() + "." + method.getName() + "(...)", msg);
+                logger.info("Invoke message handler failed, cause: illegal argument, handler: {}, msg: {}.", handlerName(invocationTarget), msg);
 
             }
         }
     }
 
-    private boolean isMethodSignatureMatch(InvocationTarget invocationTarget, ActorMsg msg) {
-        Method method = invocationTarget.getMethod();
-
-        if (method.getParameterCount() == 1 && method.getParameters()[0].isAnnotationPresent(ActorMessage.class) && ClassUtils.isAssignable(ActorMsg.class, method.getParameters()[0].getType())) {
-            // 优先看参数个数是否是1，且带有@ActorMessage注解
-            return true;
-        }
-
-        // 看参数个数和类型是否匹配
-        if (method.getParameterCount() != msg.getPayloads().length) {
-            return false;
-        }
-        for (int i = 0; i < msg.getPayloads().length; i++) {
-            if (msg.getPayloads()[i] != null &&!ClassUtils.isAssignable(msg.getPayloads()[i].getClass(), method.getParameters()[i].getType())) {
-                return false;
-            }
-        }
-        return true;
+    private static String handlerName(InvocationTarget invocationTarget) {
+        return invocationTarget.getTarget().getClass().getName() + "." + invocationTarget.getName() + "(...)";
     }
 
 
-    private InvocationTarget selectInvocationTarget(List<InvocationTarget> targets, ActorMsg msg) throws InvocationTargetException {
+    private InvocationTarget selectInvocationTarget(String topic, ActorMsg msg) throws InvocationTargetException {
         // 选择一个签名匹配的方法
-        if(null == targets) {
-            return null;
-        }
-        List<InvocationTarget> matchTargets = targets.stream().filter(target -> isMethodSignatureMatch(target, msg)).collect(Collectors.toList());
-        if (matchTargets.size() > 1) {
-            throw new InvocationTargetException(new IllegalStateException("More than one target matched."));
-        } else if (matchTargets.size() == 1) {
-            return matchTargets.get(0);
-        } else {
-            return null;
+        InvocationTargetCache cache = invocationTargetCaches.get(topic);
+        if (null == cache) {
+            List<InvocationTarget> targets = actorListeners.get(topic);
+            if (null == targets) {
+                return null;
+            }
+            cache = new InvocationTargetCache(targets);
+            invocationTargetCaches.put(topic, cache);
         }
-    }
-
-    private boolean needResponse(ActorMsg msg, Method method) {
-        return (msg.getContext().getResponseConfig() == ActorMsg.Response.REQUIRED
-                || (msg.getContext().getResponseConfig() == ActorMsg.Response.DEFAULT && !void.class.equals(method.getReturnType()))) && !method.isAnnotationPresent(ResponseManually.class);
+        return cache.select(msg);
     }
 
     /**
@@ -290,11 +284,18 @@ class ActorInbox {
      *  false：收件箱里没有消息，返回false。
      */
     boolean processOneMsg() {
+        return processOneMsg(null);
+    }
+
+    /**
+     * @param watch 记录正在处理的消息，供看门狗检查，没有开启看门狗时为null
+     */
+    boolean processOneMsg(ActorWatchdog.HandlerWatch watch) {
         boolean hasMessage = false;
         for (Map.Entry<String, BlockingQueue<ActorMsg>> entry : topicQueueMap.entrySet()) {
             BlockingQueue<ActorMsg> queue = entry.getValue();
 
-            if (processOneMsgFromQueue(queue)) {
+            if (processOneMsgFromQueue(queue, watch)) {
                 hasMessage = true;
             }
 
@@ -302,21 +303,76 @@ class ActorInbox {
         return hasMessage;
     }
 
-    private boolean processOneMsgFromQueue(BlockingQueue<ActorMsg> queue){
+    void setTurn(int throughput, long timeSliceNanos) {
+        this.throughput = throughput;
+        this.timeSliceNanos = timeSliceNanos;
+    }
+
+    /**
+     * 处理一轮消息.
+     * throughput为1时等同于{@link #processOneMsg()}；
+     * 否则轮流从各个队列中取消息处理，直到处理了throughput个消息、超过了时间片或者收件箱中没有消息。
+     * 下一轮从这一轮停下的位置继续，每个有消息的队列都能轮到。
+     * @param watch 记录正在处理的消息，供看门狗检查，没有开启看门狗时为null
+     * @return 是否处理了消息
+     */
+    boolean processMsgs(ActorWatchdog.HandlerWatch watch) {
+        if (throughput <= 1) {
+            return processOneMsg(watch);
+        }
+        final long deadline = timeSliceNanos > 0 ? System.nanoTime() + timeSliceNanos : 0L;
+        int processed = 0;
+        // 第一遍从上一轮停下的位置开始，跳过的队列在后面几遍中处理
+        int skip = cursor;
+        boolean hasMessage = true;
+        while (hasMessage) {
+            hasMessage = skip > 0;
+            int position = 0;
+            for (BlockingQueue<ActorMsg> queue : topicQueueMap.values()) {
+                if (position++ < skip) {
+                    continue;
+                }
+                if (processOneMsgFromQueue(queue, watch)) {
+                    hasMessage = true;
+                    if (++processed >= throughput || (deadline != 0L && System.nanoTime() - deadline >= 0)) {
+                        cursor = position;
+                        return true;
+                    }
+                }
+            }
+            skip = 0;
+        }
+        cursor = 0;
+        return processed > 0;
+    }
+
+    private boolean processOneMsgFromQueue(BlockingQueue<ActorMsg> queue, ActorWatchdog.HandlerWatch watch){
         ActorMsg msg = queue.poll();
         if (msg != null) {
+            counters.onDequeue();
             if (msg.getContext().getMetric() != null) {
                 msg.getContext().getMetric().onInboxDequeue(queue.size());
+                if (null != latencyStats) {
+                    latencyStats.record(msg.getTopic(), LatencyType.INBOX_WAIT, msg.getContext().getMetric().inboxWaitNanos());
+                }
+            }
+            msg.getContext().trace(msg, TraceStage.INBOX_DEQUEUE);
+            ActorJfrEvents.HandlerEvent event = null;
+            if (ActorEvents.handlerEnabled) {
+                event = new ActorJfrEvents.HandlerEvent();
+                event.queueDepth = queue.size();
+                event.begin();
+            }
+            if (null != watch) {
+                watch.begin(myAddr, msg.getTopic());
             }
             try {
                 if (processInternalMessage(msg)) {
                     return true;
                 }
 
-                List<InvocationTarget> targets = actorListeners.get(msg.getTopic());
-
                 // 选择一个签名匹配的方法
-                InvocationTarget invocationTarget = selectInvocationTarget(targets, msg);
+                InvocationTarget invocationTarget = selectInvocationTarget(msg.getTopic(), msg);
                 if (null != invocationTarget) {
                     tryInvoke(invocationTarget, msg);
                     return true;
@@ -336,9 +392,24 @@ class ActorInbox {
             } catch (Throwable t) {
                 logger.warn("Invoke handler exception, msg: {}", msg, t);
             } finally {
+                if (null != watch) {
+                    watch.end();
+                }
+                if (null != event) {
+                    event.end();
+                    event.actor = myAddr;
+                    event.sender = msg.getSender();
+                    event.topic = msg.getTopic();
+                    event.commit();
+                }
                 if (msg.getContext().getMetric() != null) {
                     msg.getContext().getMetric().onConsumed();
+                    if (null != latencyStats) {
+                        latencyStats.record(msg.getTopic(), LatencyType.HANDLER, msg.getContext().getMetric().handlerNanos());
+                    }
                 }
+                msg.getContext().trace(msg, TraceStage.CONSUMED);
+                msg.getContext().onConsumed();
             }
 
             return true;
@@ -351,7 +422,11 @@ class ActorInbox {
             String methodName = msg.getTopic().substring(1);
             switch (methodName) {
                 case "addActorListener":
-                    addActorListener(msg.getPayload(), msg.<Runnable>getPayload(1));
+                    if (msg.getPayload(1) instanceof LongConsumer) {
+                        addActorListener(msg.getPayload(), msg.<LongConsumer>getPayload(1));
+                    } else {
+                        addActorListener(msg.getPayload(), msg.<Runnable>getPayload(1));
+                    }
                     break;
                 case "removeActorListener":
                 case "removeActorSubscriber":
@@ -360,6 +435,9 @@ class ActorInbox {
                 case "addActorSubscriber":
                     addActorSubscriber(msg.getPayload(), msg.<Runnable>getPayload(1));
                     break;
+                case "runDelay":
+                    msg.<TimerHandle>getPayload().run();
+                    break;
                 default:
                     throw new IllegalArgumentException("Unsupported method: " + methodName);
             }
@@ -370,33 +448,66 @@ class ActorInbox {
 
 
     void receive(ActorMsg msg) {
-        BlockingQueue<ActorMsg> queue = topicQueueMap.computeIfAbsent(msg.getQueueName(), queueName -> new LinkedBlockingQueue<>(defaultCapacity));
-        queue.add(msg);
+        BlockingQueue<ActorMsg> queue = topicQueueMap.computeIfAbsent(msg.getQueueName(), queueName -> queueType.newQueue(defaultCapacity));
+        // 入队之后消息可能马上被处理，入队之前取时间戳
+        long traceTime = msg.getContext().traceTime();
+        try {
+            queue.add(msg);
+        } catch (IllegalStateException e) {
+            counters.onReject(ActorRejectPolicy.EXCEPTION);
+            throw e;
+        }
+        counters.onEnqueue();
         ring();
+        msg.getContext().trace(msg, TraceStage.INBOX_ENQUEUE, traceTime);
         if (msg.getContext().getMetric() != null) {
             msg.getContext().getMetric().onInboxEnqueue(msg.getQueueName(), queue.size());
+            if (null != latencyStats) {
+                latencyStats.record(msg.getTopic(), LatencyType.TRANSIT, msg.getContext().getMetric().transitNanos());
+            }
         }
     }
 
-    void setRing(Object ring) {
+    void setLatencyStats(ActorLatencyStats latencyStats) {
+        this.latencyStats = latencyStats;
+    }
+
+    void setRing(Runnable ring) {
         this.ring = ring;
     }
 
     private void ring() {
         if(ring != null) {
-            //noinspection SynchronizeOnNonFinalField
-            synchronized (ring) {
-                ring.notify();
-            }
+            ring.run();
         }
     }
 
     boolean cleared() {
-        return topicQueueMap.values().stream().allMatch(BlockingQueue::isEmpty);
+        for (BlockingQueue<ActorMsg> queue : topicQueueMap.values()) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public int getQueueSize(String queueName) {
-        return topicQueueMap.getOrDefault(queueName, new LinkedBlockingQueue<>(defaultCapacity)).size();
+        // 不存在的队列返回0，不创建队列
+        BlockingQueue<ActorMsg> queue = topicQueueMap.get(queueName);
+        return null == queue ? 0 : queue.size();
+    }
+
+    /**
+     * 所有队列中的消息数量
+     */
+    Map<String, Integer> getQueueSizes() {
+        Map<String, Integer> sizes = new HashMap<>(topicQueueMap.size() * 2);
+        topicQueueMap.forEach((queueName, queue) -> sizes.put(queueName, queue.size()));
+        return sizes;
+    }
+
+    MailboxCounters getCounters() {
+        return counters;
     }
 
 }
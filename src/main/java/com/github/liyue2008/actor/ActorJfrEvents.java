@@ -0,0 +1,179 @@
+package com.github.liyue2008.actor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * actor-light的JFR事件，默认关闭，不记录调用栈。
+ * 只在{@link ActorEvents}的对应开关打开时使用这些类，运行时不支持JFR时不会加载。
+ */
+final class ActorJfrEvents {
+    private static final String PREFIX = "com.github.liyue2008.actor.";
+    static final String SEND = PREFIX + "Send";
+    static final String DISPATCH = PREFIX + "Dispatch";
+    static final String HANDLER = PREFIX + "Handler";
+    static final String RESPONSE = PREFIX + "Response";
+    static final String SCHEDULER_FIRE = PREFIX + "SchedulerFire";
+    static final String STUCK_HANDLER = PREFIX + "StuckHandler";
+    private static final String ENABLED = "#enabled";
+
+    private ActorJfrEvents() {}
+
+    static void install() {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update();
+            }
+
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                update();
+            }
+        });
+    }
+
+    // 录制状态变化时更新开关。回调时录制的配置可能还没有生效，EventType.isEnabled()不可靠，
+    // 直接检查正在进行的录制的配置。录制进行中修改配置，需要在下一次录制状态变化时才能生效。
+    private static void update() {
+        Set<String> enabled = new HashSet<>();
+        for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.getSettings().forEach((key, value) -> {
+                    if (key.endsWith(ENABLED) && "true".equals(value)) {
+                        enabled.add(key.substring(0, key.length() - ENABLED.length()));
+                    }
+                });
+            }
+        }
+        ActorEvents.sendEnabled = enabled.contains(SEND);
+        ActorEvents.dispatchEnabled = enabled.contains(DISPATCH);
+        ActorEvents.handlerEnabled = enabled.contains(HANDLER);
+        ActorEvents.responseEnabled = enabled.contains(RESPONSE);
+        ActorEvents.schedulerEnabled = enabled.contains(SCHEDULER_FIRE);
+        ActorEvents.stuckHandlerEnabled = enabled.contains(STUCK_HANDLER);
+    }
+
+    @Name(SEND)
+    @Label("Actor Send")
+    @Description("A message put into the outbox, or delivered directly to the receiver's inbox")
+    @Category({"actor-light"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class SendEvent extends Event {
+        @Label("Actor")
+        String actor;
+        @Label("Receiver")
+        String receiver;
+        @Label("Topic")
+        String topic;
+        @Label("Queue Depth")
+        int queueDepth;
+        @Label("Rejected")
+        boolean rejected;
+    }
+
+    @Name(DISPATCH)
+    @Label("Actor Dispatch")
+    @Description("A message taken from the outbox and put into the receiver's inbox")
+    @Category({"actor-light"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class DispatchEvent extends Event {
+        @Label("Actor")
+        String actor;
+        @Label("Receiver")
+        String receiver;
+        @Label("Topic")
+        String topic;
+        @Label("Queue Depth")
+        int queueDepth;
+        @Label("Rejected")
+        boolean rejected;
+    }
+
+    @Name(HANDLER)
+    @Label("Actor Handler")
+    @Description("A message taken from the inbox and processed by its handler")
+    @Category({"actor-light"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class HandlerEvent extends Event {
+        @Label("Actor")
+        String actor;
+        @Label("Sender")
+        String sender;
+        @Label("Topic")
+        String topic;
+        @Label("Queue Depth")
+        int queueDepth;
+    }
+
+    @Name(RESPONSE)
+    @Label("Actor Response")
+    @Description("A response matched with its request")
+    @Category({"actor-light"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class ResponseEvent extends Event {
+        @Label("Actor")
+        String actor;
+        @Label("Responder")
+        String responder;
+        @Label("Topic")
+        @Description("Topic of the request")
+        String topic;
+        @Label("Pending Requests")
+        int pendingRequests;
+        @Label("Exceptional")
+        boolean exceptional;
+    }
+
+    @Name(SCHEDULER_FIRE)
+    @Label("Actor Scheduler Fire")
+    @Description("A periodic scheduler message delivered to the actor's inbox")
+    @Category({"actor-light"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class SchedulerFireEvent extends Event {
+        @Label("Actor")
+        String actor;
+        @Label("Topic")
+        String topic;
+        @Label("Rejected")
+        boolean rejected;
+    }
+
+    @Name(STUCK_HANDLER)
+    @Label("Actor Stuck Handler")
+    @Description("A handler still running after the watchdog threshold, with the actor thread's stack trace")
+    @Category({"actor-light"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class StuckHandlerEvent extends Event {
+        @Label("Actor Thread")
+        String actorThread;
+        @Label("Actor")
+        String actor;
+        @Label("Topic")
+        String topic;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+        @Label("Actor Thread Stack")
+        String stack;
+    }
+}
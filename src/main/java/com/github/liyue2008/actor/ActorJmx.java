@@ -0,0 +1,310 @@
+package com.github.liyue2008.actor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 为ActorSystem、ActorThread和Actor注册MXBean，ObjectName的格式为：
+ * com.github.liyue2008.actor:type=ActorSystem,name=系统名称
+ * com.github.liyue2008.actor:type=ActorThread,system=系统名称,name=线程名称
+ * com.github.liyue2008.actor:type=Actor,system=系统名称,name=Actor地址
+ */
+class ActorJmx {
+    private static final Logger logger = LoggerFactory.getLogger(ActorJmx.class);
+    static final String DOMAIN = "com.github.liyue2008.actor";
+    private static final String DEFAULT_SYSTEM_NAME = "default";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    void register(String systemName, ActorDispatchMode dispatchMode, List<Actor> actors, List<ActorThread> threads) {
+        String system = ObjectName.quote(systemName.isEmpty() ? DEFAULT_SYSTEM_NAME : systemName);
+        register(DOMAIN + ":type=ActorSystem,name=" + system, new SystemBean(systemName, dispatchMode, actors, threads));
+        for (ActorThread thread : threads) {
+            register(DOMAIN + ":type=ActorThread,system=" + system + ",name=" + ObjectName.quote(thread.getName()), new ThreadBean(thread));
+        }
+        for (Actor actor : actors) {
+            register(DOMAIN + ":type=Actor,system=" + system + ",name=" + ObjectName.quote(actor.getAddr()), new ActorBean(actor));
+        }
+    }
+
+    private void register(String name, Object bean) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            server.registerMBean(bean, objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            logger.warn("Register MBean {} failed, cause: {}.", name, e.toString());
+        }
+    }
+
+    void unregister() {
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Unregister MBean {} failed, cause: {}.", objectName, e.toString());
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * 按两次读取之间的增量计算速率，两次读取间隔小于1秒时返回上一次的结果
+     */
+    private static class Rate {
+        private static final long MIN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private final LongSupplier counter;
+        private long lastCount;
+        private long lastNanos;
+        private double rate = 0.0;
+
+        private Rate(LongSupplier counter) {
+            this.counter = counter;
+            this.lastCount = counter.getAsLong();
+            this.lastNanos = System.nanoTime();
+        }
+
+        synchronized double get() {
+            long now = System.nanoTime();
+            if (now - lastNanos >= MIN_INTERVAL_NANOS) {
+                long count = counter.getAsLong();
+                rate = (count - lastCount) * 1_000_000_000.0 / (now - lastNanos);
+                lastCount = count;
+                lastNanos = now;
+            }
+            return rate;
+        }
+    }
+
+    private static class SystemBean implements ActorSystemMXBean {
+        private final String name;
+        private final ActorDispatchMode dispatchMode;
+        private final List<Actor> actors;
+        private final List<ActorThread> threads;
+        private final Rate processRate;
+
+        private SystemBean(String name, ActorDispatchMode dispatchMode, List<Actor> actors, List<ActorThread> threads) {
+            this.name = name;
+            this.dispatchMode = dispatchMode;
+            this.actors = actors;
+            this.threads = threads;
+            this.processRate = new Rate(this::getProcessedCount);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDispatchMode() {
+            return dispatchMode.name();
+        }
+
+        @Override
+        public int getActorCount() {
+            return actors.size();
+        }
+
+        @Override
+        public int getThreadCount() {
+            return threads.size();
+        }
+
+        @Override
+        public long getInboxDepth() {
+            long depth = 0L;
+            for (Actor actor : actors) {
+                for (int size : actor.getInbox().getQueueSizes().values()) {
+                    depth += size;
+                }
+            }
+            return depth;
+        }
+
+        @Override
+        public long getOutboxDepth() {
+            long depth = 0L;
+            for (Actor actor : actors) {
+                for (int size : actor.getOutbox().getQueueSizes().values()) {
+                    depth += size;
+                }
+            }
+            return depth;
+        }
+
+        @Override
+        public long getProcessedCount() {
+            long count = 0L;
+            for (Actor actor : actors) {
+                count += actor.getInbox().getCounters().getDequeued();
+            }
+            return count;
+        }
+
+        @Override
+        public double getProcessRate() {
+            return processRate.get();
+        }
+    }
+
+    private static class ActorBean implements ActorMXBean {
+        private final Actor actor;
+        private final MailboxCounters inbox;
+        private final MailboxCounters outbox;
+        private final Rate inboxEnqueueRate;
+        private final Rate inboxDequeueRate;
+        private final Rate outboxEnqueueRate;
+        private final Rate outboxDequeueRate;
+
+        private ActorBean(Actor actor) {
+            this.actor = actor;
+            this.inbox = actor.getInbox().getCounters();
+            this.outbox = actor.getOutbox().getCounters();
+            this.inboxEnqueueRate = new Rate(inbox::getEnqueued);
+            this.inboxDequeueRate = new Rate(inbox::getDequeued);
+            this.outboxEnqueueRate = new Rate(outbox::getEnqueued);
+            this.outboxDequeueRate = new Rate(outbox::getDequeued);
+        }
+
+        @Override
+        public String getAddr() {
+            return actor.getAddr();
+        }
+
+        @Override
+        public Map<String, Integer> getInboxQueueSizes() {
+            return actor.getInbox().getQueueSizes();
+        }
+
+        @Override
+        public Map<String, Integer> getOutboxQueueSizes() {
+            return actor.getOutbox().getQueueSizes();
+        }
+
+        @Override
+        public long getInboxEnqueueCount() {
+            return inbox.getEnqueued();
+        }
+
+        @Override
+        public long getInboxDequeueCount() {
+            return inbox.getDequeued();
+        }
+
+        @Override
+        public double getInboxEnqueueRate() {
+            return inboxEnqueueRate.get();
+        }
+
+        @Override
+        public double getInboxDequeueRate() {
+            return inboxDequeueRate.get();
+        }
+
+        @Override
+        public long getInboxRejectCount() {
+            return inbox.getRejected();
+        }
+
+        @Override
+        public long getOutboxEnqueueCount() {
+            return outbox.getEnqueued();
+        }
+
+        @Override
+        public long getOutboxDequeueCount() {
+            return outbox.getDequeued();
+        }
+
+        @Override
+        public double getOutboxEnqueueRate() {
+            return outboxEnqueueRate.get();
+        }
+
+        @Override
+        public double getOutboxDequeueRate() {
+            return outboxDequeueRate.get();
+        }
+
+        @Override
+        public Map<String, Long> getOutboxRejectCounts() {
+            Map<String, Long> counts = new HashMap<>();
+            for (ActorRejectPolicy rejectPolicy : ActorRejectPolicy.values()) {
+                counts.put(rejectPolicy.name(), outbox.getRejected(rejectPolicy));
+            }
+            return counts;
+        }
+    }
+
+    private static class ThreadBean implements ActorThreadMXBean {
+        private final ActorThread thread;
+        private long lastBusy;
+        private long lastTotal;
+        private long lastNanos = System.nanoTime();
+        private double utilization = 0.0;
+
+        private ThreadBean(ActorThread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public String getName() {
+            return thread.getName();
+        }
+
+        @Override
+        public long getHandlerTime() {
+            return TimeUnit.NANOSECONDS.toMillis(thread.getHandlerNanos());
+        }
+
+        @Override
+        public long getForwardTime() {
+            return TimeUnit.NANOSECONDS.toMillis(thread.getForwardNanos());
+        }
+
+        @Override
+        public long getScanTime() {
+            return TimeUnit.NANOSECONDS.toMillis(thread.getScanNanos());
+        }
+
+        @Override
+        public long getParkTime() {
+            return TimeUnit.NANOSECONDS.toMillis(thread.getParkNanos());
+        }
+
+        @Override
+        public long getCpuTime() {
+            long cpuNanos = thread.getCpuNanos();
+            return cpuNanos < 0 ? -1L : TimeUnit.NANOSECONDS.toMillis(cpuNanos);
+        }
+
+        @Override
+        public synchronized double getUtilization() {
+            long now = System.nanoTime();
+            if (now - lastNanos >= TimeUnit.SECONDS.toNanos(1)) {
+                long busy = thread.getHandlerNanos() + thread.getForwardNanos();
+                long total = busy + thread.getScanNanos() + thread.getParkNanos();
+                if (total > lastTotal) {
+                    utilization = (double) (busy - lastBusy) / (total - lastTotal);
+                }
+                lastBusy = busy;
+                lastTotal = total;
+                lastNanos = now;
+            }
+            return utilization;
+        }
+    }
+}
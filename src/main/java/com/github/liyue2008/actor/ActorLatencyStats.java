@@ -0,0 +1,52 @@
+package com.github.liyue2008.actor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一个Actor按主题和阶段统计的耗时直方图
+ */
+class ActorLatencyStats {
+    private static final LatencyType[] TYPES = LatencyType.values();
+    private final String addr;
+    private final Map<String /* topic */, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    ActorLatencyStats(String addr) {
+        this.addr = addr;
+    }
+
+    void record(String topic, LatencyType type, long nanos) {
+        LatencyHistogram[] topicHistograms = histograms.get(topic);
+        if (null == topicHistograms) {
+            topicHistograms = histograms.computeIfAbsent(topic, t -> {
+                LatencyHistogram[] array = new LatencyHistogram[TYPES.length];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = new LatencyHistogram();
+                }
+                return array;
+            });
+        }
+        topicHistograms[type.ordinal()].record(nanos);
+    }
+
+    /**
+     * @param reset 是否在读取的同时清零
+     * @return 所有有数据的主题和阶段
+     */
+    List<LatencySnapshot> snapshot(boolean reset) {
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram[]> entry : histograms.entrySet()) {
+            for (LatencyType type : TYPES) {
+                LatencyHistogram histogram = entry.getValue()[type.ordinal()];
+                LatencySnapshot snapshot = new LatencySnapshot(addr, entry.getKey(), type,
+                        histogram.snapshotBuckets(reset), histogram.snapshotSum(reset), histogram.snapshotMax(reset));
+                if (snapshot.getCount() > 0) {
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        return snapshots;
+    }
+}
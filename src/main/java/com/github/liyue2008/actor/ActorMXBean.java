@@ -0,0 +1,47 @@
+package com.github.liyue2008.actor;
+
+import java.util.Map;
+
+/**
+ * Actor的JMX接口，通过{@link ActorSystem.Builder#enableJmx()}开启。
+ * 速率按两次读取之间（至少1秒）的平均值计算，单位是每秒的消息数量。
+ */
+public interface ActorMXBean {
+    String getAddr();
+
+    /**
+     * 收件箱每个队列中的消息数量
+     */
+    Map<String, Integer> getInboxQueueSizes();
+
+    /**
+     * 发件箱每个队列中的消息数量
+     */
+    Map<String, Integer> getOutboxQueueSizes();
+
+    long getInboxEnqueueCount();
+
+    long getInboxDequeueCount();
+
+    double getInboxEnqueueRate();
+
+    double getInboxDequeueRate();
+
+    /**
+     * 收件箱满了，投递失败的次数，投递失败的消息会留在发送者的发件箱中重试
+     */
+    long getInboxRejectCount();
+
+    long getOutboxEnqueueCount();
+
+    long getOutboxDequeueCount();
+
+    double getOutboxEnqueueRate();
+
+    double getOutboxDequeueRate();
+
+    /**
+     * 发件箱满了，按拒绝策略统计的次数
+     */
+    Map<String, Long> getOutboxRejectCounts();
+}
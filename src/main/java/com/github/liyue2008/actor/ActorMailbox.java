@@ -0,0 +1,70 @@
+package com.github.liyue2008.actor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 就绪队列调度模式下的调度单元，包含一个Actor的收件箱和发件箱。
+ * 收件箱或发件箱收到消息时，如果Actor不在就绪队列中，将其放入所属ActorThread的就绪队列。
+ * 同一时刻一个Actor最多在一个就绪队列中，保证Actor的消息处理是单线程的。
+ */
+class ActorMailbox {
+    private final ActorInbox inbox;
+    private final ActorOutbox outbox;
+    // 是否已经在就绪队列中，或者正在被处理
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    // 所属的ActorThread，WORK_STEALING模式下Actor被窃取后会变为窃取它的线程
+    private volatile ActorThread owner;
+
+    ActorMailbox(Actor actor) {
+        this.inbox = actor.getInbox();
+        this.outbox = actor.getOutbox();
+    }
+
+    void attach(ActorThread owner) {
+        this.owner = owner;
+        inbox.setRing(this::schedule);
+        outbox.setRing(this::schedule);
+    }
+
+    /**
+     * Actor被其它线程窃取后，迁移到窃取它的线程，之后的消息都由新线程处理
+     */
+    void migrate(ActorThread owner) {
+        this.owner = owner;
+    }
+
+    void schedule() {
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            owner.schedule(this);
+        }
+    }
+
+    /**
+     * 处理一轮收件箱中的消息
+     * @param watch 记录正在处理的消息，供看门狗检查，没有开启看门狗时为null
+     * @return 是否处理了消息
+     */
+    boolean processInbox(ActorWatchdog.HandlerWatch watch) {
+        return inbox.processMsgs(watch);
+    }
+
+    /**
+     * 派送一轮发件箱中的消息
+     * @param postman 派送发件箱中消息的方法
+     * @return 是否派送了消息
+     */
+    boolean processOutbox(Consumer<ActorMsg> postman) {
+        return outbox.consumeMsgs(postman);
+    }
+
+    /**
+     * 处理完成后调用，如果还有未处理的消息，重新放入就绪队列
+     */
+    void done() {
+        scheduled.set(false);
+        if (!inbox.cleared() || !outbox.cleared()) {
+            schedule();
+        }
+    }
+}
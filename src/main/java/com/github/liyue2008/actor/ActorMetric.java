@@ -12,6 +12,12 @@ public class ActorMetric {
     private long inboxEnqueueTime;
     private long inboxDequeueTime;
     private long consumedTime; // 消费完成的时间
+    // 用于统计耗时的纳秒时间戳
+    private long outboxEnqueueNanos;
+    private long outboxDequeueNanos;
+    private long inboxEnqueueNanos;
+    private long inboxDequeueNanos;
+    private long consumedNanos;
 
     private int inboxEnqueueSize;
     private int inboxDequeueSize;
@@ -32,10 +38,12 @@ public class ActorMetric {
         this.inboxQueueName = queueName;
         this.inboxEnqueueSize = queueSize;
         this.inboxEnqueueTime = System.currentTimeMillis();
+        this.inboxEnqueueNanos = System.nanoTime();
     }
     void onInboxDequeue(int queueSize) {
         this.inboxDequeueSize = queueSize;
         this.inboxDequeueTime = System.currentTimeMillis();
+        this.inboxDequeueNanos = System.nanoTime();
     }
 
     public long getOutboxEnqueueTime() {
@@ -46,10 +54,12 @@ public class ActorMetric {
         this.outBoxQueueName = queueName;
         this.outBoxEnqueueSize = queueSize;
         this.outboxEnqueueTime = System.currentTimeMillis();
+        this.outboxEnqueueNanos = System.nanoTime();
     }
     void onOutboxDequeue(int queueSize) {
         this.outBoxDequeueSize = queueSize;
         this.outboxDequeueTime = System.currentTimeMillis();
+        this.outboxDequeueNanos = System.nanoTime();
     }
 
     public long getInboxDequeueTime() {
@@ -62,6 +72,7 @@ public class ActorMetric {
 
     void onConsumed() {
         this.consumedTime = System.currentTimeMillis();
+        this.consumedNanos = System.nanoTime();
     }
 
     public int getInboxEnqueueSize() {
@@ -92,6 +103,22 @@ public class ActorMetric {
         return outBoxDequeueSize;
     }
 
+    long outboxWaitNanos() {
+        return outboxDequeueNanos - outboxEnqueueNanos;
+    }
+
+    long transitNanos() {
+        return inboxEnqueueNanos - outboxDequeueNanos;
+    }
+
+    long inboxWaitNanos() {
+        return inboxDequeueNanos - inboxEnqueueNanos;
+    }
+
+    long handlerNanos() {
+        return consumedNanos - inboxDequeueNanos;
+    }
+
     public long cost() {
         return consumedTime - createTime;
     }
@@ -20,6 +20,12 @@ public class ActorMsg {
 
     private final ActorMsgCtx context;
 
+    // 以下字段只在响应中有效：响应只携带请求的ID、主题和队列名，不引用请求本身，
+    // 避免请求的内容在响应返回之前一直不能被回收。
+    private final long correlationId;
+    private final String requestTopic;
+    private final String requestQueueName;
+
     public enum Response {
         REQUIRED, // 要求返回响应
         DEFAULT, // 默认值，是否返回响应由接收着决定
@@ -32,12 +38,25 @@ public class ActorMsg {
     }
 
     static final String RESPONSE = "actor_response";
+    // 请求超时，只在Actor内部使用
+    static final String RESPONSE_TIMEOUT = "actor_response_timeout";
 
     /**
-     * create response message
+     * create response message.
+     * 响应不包含请求，payloads为{result, throwable}，通过{@link #getResult()}和{@link #getThrowable()}读取，
+     * 请求的ID和主题通过{@link #getCorrelationId()}和{@link #getRequestTopic()}读取。
      */
     public ActorMsg(long sequentialId, String sender,ActorMsg request, Object result, Throwable throwable) {
-        this(sequentialId, sender, request.getSender(), RESPONSE, new ActorMsgCtx(Response.IGNORE, Type.RESPONSE, ActorRejectPolicy.EXCEPTION, request.getContext().getMetric() != null), request, result, throwable);
+        this.sequentialId = sequentialId;
+        this.sender = sender;
+        this.receiver = request.getSender();
+        this.topic = RESPONSE;
+        this.context = new ActorMsgCtx(Response.IGNORE, Type.RESPONSE, ActorRejectPolicy.EXCEPTION, request.getContext().getMetric() != null);
+        this.context.inheritTrace(request.getContext());
+        this.payloads = new Object[] {result, throwable};
+        this.correlationId = request.sequentialId;
+        this.requestTopic = request.getTopic();
+        this.requestQueueName = request.getQueueName();
     }
     public ActorMsg(long sequentialId, String sender, String receiver, String topic, Object... payloads) {
         this(sequentialId, sender, receiver, topic, new ActorMsgCtx(), payloads);
@@ -50,6 +69,13 @@ public class ActorMsg {
         this.topic = topic;
         this.context = context;
         this.payloads = payloads;
+        this.correlationId = -1L;
+        this.requestTopic = null;
+        this.requestQueueName = null;
+    }
+
+    public long getSequentialId() {
+        return sequentialId;
     }
 
     public String getSender() {
@@ -81,7 +107,7 @@ public class ActorMsg {
         if (context.getType() == Type.REQUEST) {
             return this.topic;
         } else {
-            return this.getRequest().getQueueName();
+            return this.requestQueueName;
         }
     }
 
@@ -112,24 +138,35 @@ public class ActorMsg {
         return Objects.hash(sequentialId, sender);
     }
 
-    public ActorMsg getRequest() {
-        if (context.getType() != Type.RESPONSE) {
-            throw new IllegalStateException("Not a response message!");
-        }
-        return getPayload(0);
+    /**
+     * 响应对应的请求的ID，用于在发送者中找到等待响应的请求
+     */
+    public long getCorrelationId() {
+        checkResponse();
+        return correlationId;
+    }
+
+    /**
+     * 响应对应的请求的主题
+     */
+    public String getRequestTopic() {
+        checkResponse();
+        return requestTopic;
     }
 
     public <T> T getResult() {
-        if (context.getType() != Type.RESPONSE) {
-            throw new IllegalStateException("Not a response message!");
-        }
-        return getPayload(1);
+        checkResponse();
+        return getPayload(0);
     }
 
     public Throwable getThrowable() {
+        checkResponse();
+        return getPayload(1);
+    }
+
+    private void checkResponse() {
         if (context.getType() != Type.RESPONSE) {
             throw new IllegalStateException("Not a response message!");
         }
-        return getPayload(2);
     }
 }
@@ -7,6 +7,11 @@ public class ActorMsgCtx {
     private final ActorMsg.Type type;
     private final ActorRejectPolicy rejectPolicy;
     private final ActorMetric metric;
+    // 消息被处理之后调用，无论处理成功与否
+    private volatile Runnable consumedListener = null;
+    // 被采样跟踪的消息才有tracer，traceId为0表示没有被采样
+    private ActorTracer tracer = null;
+    private long traceId = 0L;
     public ActorMsgCtx() {
         this(ActorMsg.Response.DEFAULT, ActorMsg.Type.REQUEST, ActorRejectPolicy.EXCEPTION);
     }
@@ -57,4 +62,51 @@ public class ActorMsgCtx {
     public ActorMetric getMetric() {
         return metric;
     }
+
+    void setConsumedListener(Runnable consumedListener) {
+        this.consumedListener = consumedListener;
+    }
+
+    void onConsumed() {
+        Runnable listener = consumedListener;
+        if (null != listener) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 跟踪的ID，没有被采样的消息返回0
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    void startTrace(ActorTracer tracer, long traceId) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+    }
+
+    // 响应和请求使用同一个traceId
+    void inheritTrace(ActorMsgCtx request) {
+        startTrace(request.tracer, request.traceId);
+    }
+
+    /**
+     * 被采样的消息返回当前时间，否则返回0，用于在入队之前取时间戳
+     */
+    long traceTime() {
+        return traceId == 0L ? 0L : System.nanoTime();
+    }
+
+    void trace(ActorMsg msg, TraceStage stage) {
+        if (traceId != 0L) {
+            tracer.record(traceId, stage, msg, System.nanoTime());
+        }
+    }
+
+    void trace(ActorMsg msg, TraceStage stage, long nanoTime) {
+        if (traceId != 0L) {
+            tracer.record(traceId, stage, msg, nanoTime);
+        }
+    }
 }
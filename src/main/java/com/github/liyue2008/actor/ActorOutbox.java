@@ -23,9 +23,26 @@ class ActorOutbox {
     private final ThreadLocal<ActorThreadContext> contextThreadLocal = new ThreadLocal<>();
 
     private final boolean enableMetric;
+    private ActorTracer tracer = null;
+    // 开启指标收集时按主题统计耗时，否则为null
+    private ActorLatencyStats latencyStats = null;
+    // 距离下一个被采样的消息还有多少个消息，多个线程同时发送时不精确，不影响采样
+    private int traceCountdown = 0;
 
     private final int capacity;
 
+    private final MailboxCounters counters = new MailboxCounters();
+
+    // 每轮最多派送的消息数量，为1时每轮从每个队列中派送一个消息
+    private int throughput = 1;
+    // 每轮最长的派送时间，0表示不限制，只在throughput大于1时生效
+    private long timeSliceNanos = 0L;
+    // 下一轮开始派送的队列位置，轮流从各个队列开始，避免排在后面的队列饿死
+    private int cursor = 0;
+
+    // 直接投递模式下，将消息直接投递到收件人收件箱的邮递员
+    private Consumer<ActorMsg> postman;
+
     ActorOutbox(int capacity, String myAddr, Map<String, Integer> topicQueueMap, boolean enableMetric) {
         this.capacity = capacity;
         this.myAddr = myAddr;
@@ -45,28 +62,73 @@ class ActorOutbox {
         return send(createMsg(addr, topic,response , rejectPolicy, payloads)) ;
     }
 
+    void setPostman(Consumer<ActorMsg> postman) {
+        this.postman = postman;
+    }
+
     ActorMsg send(ActorMsg actorMsg) {
+        if (!ActorEvents.sendEnabled) {
+            return doSend(actorMsg);
+        }
+        ActorJfrEvents.SendEvent event = new ActorJfrEvents.SendEvent();
+        event.begin();
+        ActorMsg ret = null;
+        try {
+            ret = doSend(actorMsg);
+            return ret;
+        } finally {
+            event.end();
+            event.actor = myAddr;
+            event.receiver = actorMsg.getReceiver();
+            event.topic = actorMsg.getTopic();
+            event.queueDepth = getQueueSize(actorMsg.getQueueName());
+            event.rejected = null == ret;
+            event.commit();
+        }
+    }
+
+    private ActorMsg doSend(ActorMsg actorMsg) {
+        if (null != postman && tryDeliver(actorMsg)) {
+            return actorMsg;
+        }
         try {
             ActorRejectPolicy rejectPolicy = actorMsg.getContext().getRejectPolicy();
             BlockingQueue<ActorMsg> queue = topicQueueMap.computeIfAbsent(actorMsg.getQueueName(), queueName -> new LinkedBlockingQueue<>(capacity));
             ActorMsg ret = actorMsg;
+            long traceTime = actorMsg.getContext().traceTime();
             switch (rejectPolicy) {
                 case EXCEPTION:
-                    queue.add(actorMsg);
+                    try {
+                        queue.add(actorMsg);
+                    } catch (IllegalStateException e) {
+                        counters.onReject(rejectPolicy);
+                        throw e;
+                    }
                     break;
                 case DROP:
-                    ret = queue.offer(actorMsg) ? actorMsg : null;
+                    if (!queue.offer(actorMsg)) {
+                        counters.onReject(rejectPolicy);
+                        ret = null;
+                    }
                     break;
                 case BLOCK:
                     ActorThreadContext context = contextThreadLocal.get();
                     if (null != context && context.isActorThread()) {
                         throw new IllegalAccessError("can not use BLOCK in actor thread.");
                     }
-                    queue.put(actorMsg);
+                    if (!queue.offer(actorMsg)) {
+                        // 队列满了，阻塞等待
+                        counters.onReject(rejectPolicy);
+                        queue.put(actorMsg);
+                    }
                     break;
                 default:
                     throw new IllegalArgumentException("unknown rejectPolicy: " + rejectPolicy);
             }
+            if (null != ret) {
+                counters.onEnqueue();
+                actorMsg.getContext().trace(actorMsg, TraceStage.OUTBOX_ENQUEUE, traceTime);
+            }
             if (actorMsg.getContext().getMetric() != null) {
                 actorMsg.getContext().getMetric().onOutboxEnqueue(actorMsg.getQueueName(), queue.size());
             }
@@ -80,8 +142,74 @@ class ActorOutbox {
         }
     }
 
+    /**
+     * 跳过发件箱，直接将消息投递到收件人的收件箱。
+     * 只有发件箱中同一队列没有积压的消息时才直接投递，以保证消息的顺序。
+     * @return 投递成功返回true；发件箱中有积压的消息或者收件人的收件箱已满返回false，此时消息需要放入发件箱稍后重试。
+     */
+    private boolean tryDeliver(ActorMsg actorMsg) {
+        BlockingQueue<ActorMsg> queue = topicQueueMap.get(actorMsg.getQueueName());
+        if (null != queue && !queue.isEmpty()) {
+            return false;
+        }
+        try {
+            if (actorMsg.getContext().getMetric() != null) {
+                actorMsg.getContext().getMetric().onOutboxEnqueue(actorMsg.getQueueName(), 0);
+                actorMsg.getContext().getMetric().onOutboxDequeue(0);
+                if (null != latencyStats) {
+                    latencyStats.record(actorMsg.getTopic(), LatencyType.OUTBOX_WAIT, 0L);
+                }
+            }
+            actorMsg.getContext().trace(actorMsg, TraceStage.OUTBOX_ENQUEUE);
+            actorMsg.getContext().trace(actorMsg, TraceStage.OUTBOX_DEQUEUE);
+            dispatch(postman, actorMsg, 0);
+            counters.onEnqueue();
+            counters.onDequeue();
+            return true;
+        } catch (IllegalStateException e) {
+            logger.debug("Target inbox queue full，put into outbox, msg: {}", actorMsg);
+            return false;
+        }
+    }
+
     ActorMsg createMsg(String addr, String topic, ActorMsg.Response response, ActorRejectPolicy rejectPolicy, Object... payloads){
-        return new ActorMsg(msgId.getAndIncrement(), myAddr, addr, topic, new ActorMsgCtx(response, ActorMsg.Type.REQUEST, rejectPolicy, this.enableMetric), payloads);
+        ActorMsg msg = new ActorMsg(msgId.getAndIncrement(), myAddr, addr, topic, new ActorMsgCtx(response, ActorMsg.Type.REQUEST, rejectPolicy, this.enableMetric), payloads);
+        ActorTracer t = tracer;
+        if (null != t && --traceCountdown <= 0) {
+            traceCountdown = t.getSampleRate();
+            t.start(msg);
+        }
+        return msg;
+    }
+
+    MailboxCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * 队列中的消息数量，不存在的队列返回0
+     */
+    int getQueueSize(String queueName) {
+        BlockingQueue<ActorMsg> queue = topicQueueMap.get(queueName);
+        return null == queue ? 0 : queue.size();
+    }
+
+    /**
+     * 所有队列中的消息数量
+     */
+    Map<String, Integer> getQueueSizes() {
+        Map<String, Integer> sizes = new HashMap<>(topicQueueMap.size() * 2);
+        topicQueueMap.forEach((queueName, queue) -> sizes.put(queueName, queue.size()));
+        return sizes;
+    }
+
+    void setLatencyStats(ActorLatencyStats latencyStats) {
+        this.latencyStats = latencyStats;
+    }
+
+    void setTracer(ActorTracer tracer) {
+        this.tracer = tracer;
+        this.traceCountdown = tracer.getSampleRate();
     }
 
     ActorMsg createResponse(ActorMsg request, Object result, Throwable throwable) {
@@ -90,44 +218,122 @@ class ActorOutbox {
 
 
 
+    void setTurn(int throughput, long timeSliceNanos) {
+        this.throughput = throughput;
+        this.timeSliceNanos = timeSliceNanos;
+    }
+
     boolean consumeOneMsg(Consumer<ActorMsg> consumer) {
         boolean hasMessage = false;
         for (BlockingQueue<ActorMsg> queue : topicQueueMap.values()) {
-            ActorMsg msg = queue.peek();
-            if (msg != null) {
-                try {
-                    if (null != msg.getContext().getMetric()) {
-                        msg.getContext().getMetric().onOutboxDequeue(queue.size() - 1);
-                    }
-                    consumer.accept(msg);
-                    queue.poll();
+            if (consumeOneMsgFromQueue(queue, consumer)) {
+                hasMessage = true;
+            }
+        }
+        return hasMessage;
+    }
 
+    /**
+     * 派送一轮消息.
+     * throughput为1时等同于{@link #consumeOneMsg(Consumer)}；
+     * 否则轮流从各个队列中取消息派送，直到派送了throughput个消息、超过了时间片或者没有可以派送的消息。
+     * 下一轮从这一轮停下的位置继续，每个有消息的队列都能轮到。
+     * @return 是否派送了消息
+     */
+    boolean consumeMsgs(Consumer<ActorMsg> consumer) {
+        if (throughput <= 1) {
+            return consumeOneMsg(consumer);
+        }
+        final long deadline = timeSliceNanos > 0 ? System.nanoTime() + timeSliceNanos : 0L;
+        int consumed = 0;
+        // 第一遍从上一轮停下的位置开始，跳过的队列在后面几遍中处理
+        int skip = cursor;
+        boolean hasMessage = true;
+        while (hasMessage) {
+            hasMessage = skip > 0;
+            int position = 0;
+            for (BlockingQueue<ActorMsg> queue : topicQueueMap.values()) {
+                if (position++ < skip) {
+                    continue;
+                }
+                if (consumeOneMsgFromQueue(queue, consumer)) {
                     hasMessage = true;
-                } catch (IllegalStateException t) {
-                    logger.debug("Target inbox queue full，retry later, msg: {}", msg, t);
+                    if (++consumed >= throughput || (deadline != 0L && System.nanoTime() - deadline >= 0)) {
+                        cursor = position;
+                        return true;
+                    }
                 }
             }
+            skip = 0;
         }
-        return hasMessage;
+        cursor = 0;
+        return consumed > 0;
     }
 
+    // 将消息投递到收件人的收件箱，收件箱满时抛出IllegalStateException
+    private void dispatch(Consumer<ActorMsg> consumer, ActorMsg msg, int queueDepth) {
+        if (!ActorEvents.dispatchEnabled) {
+            consumer.accept(msg);
+            return;
+        }
+        ActorJfrEvents.DispatchEvent event = new ActorJfrEvents.DispatchEvent();
+        event.begin();
+        boolean rejected = true;
+        try {
+            consumer.accept(msg);
+            rejected = false;
+        } finally {
+            event.end();
+            event.actor = myAddr;
+            event.receiver = msg.getReceiver();
+            event.topic = msg.getTopic();
+            event.queueDepth = queueDepth;
+            event.rejected = rejected;
+            event.commit();
+        }
+    }
 
-    private Object ring;
-    void setRing(Object ring) {
+    private boolean consumeOneMsgFromQueue(BlockingQueue<ActorMsg> queue, Consumer<ActorMsg> consumer) {
+        ActorMsg msg = queue.peek();
+        if (msg != null) {
+            try {
+                if (null != msg.getContext().getMetric()) {
+                    msg.getContext().getMetric().onOutboxDequeue(queue.size() - 1);
+                    if (null != latencyStats) {
+                        latencyStats.record(msg.getTopic(), LatencyType.OUTBOX_WAIT, msg.getContext().getMetric().outboxWaitNanos());
+                    }
+                }
+                msg.getContext().trace(msg, TraceStage.OUTBOX_DEQUEUE);
+                dispatch(consumer, msg, queue.size() - 1);
+                queue.poll();
+                counters.onDequeue();
+                return true;
+            } catch (IllegalStateException t) {
+                logger.debug("Target inbox queue full，retry later, msg: {}", msg, t);
+            }
+        }
+        return false;
+    }
+
+
+    private Runnable ring;
+    void setRing(Runnable ring) {
         this.ring = ring;
 
     }
 
     private void ring() {
         if(ring != null) {
-            //noinspection SynchronizeOnNonFinalField
-            synchronized (ring) {
-                ring.notify();
-            }
+            ring.run();
         }
     }
 
     boolean cleared() {
-        return this.topicQueueMap.values().stream().allMatch(BlockingQueue::isEmpty);
+        for (BlockingQueue<ActorMsg> queue : topicQueueMap.values()) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,22 @@
+package com.github.liyue2008.actor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 收件箱队列的实现类型
+ */
+public enum ActorQueueType {
+    LINKED, // 基于LinkedBlockingQueue，按需分配节点，适合消息量不大的Actor
+    MPSC_ARRAY; // 基于数组的无锁多生产者单消费者队列，创建时按容量分配数组，适合多个发送者向同一个Actor发送大量消息
+
+    <E> BlockingQueue<E> newQueue(int capacity) {
+        switch (this) {
+            case MPSC_ARRAY:
+                return new MpscArrayQueue<>(capacity);
+            case LINKED:
+            default:
+                return new LinkedBlockingQueue<>(capacity);
+        }
+    }
+}
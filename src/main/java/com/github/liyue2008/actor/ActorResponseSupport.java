@@ -7,14 +7,18 @@ import com.github.liyue2008.actor.annotation.ActorMessage;
 import com.github.liyue2008.actor.annotation.ActorResponseListener;
 
 import static com.github.liyue2008.actor.ActorMsg.RESPONSE;
+import static com.github.liyue2008.actor.ActorMsg.RESPONSE_TIMEOUT;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 class ActorResponseSupport {
@@ -30,26 +34,123 @@ class ActorResponseSupport {
 
     private Map<String, List<InvocationTarget>> annotationListeners = new HashMap<>();
 
+    // 默认的响应方法：topic + "Response"，第一次收到响应时查找并缓存，没有对应方法的缓存为NO_TARGET
+    private final Map<String, Object> defaultResponseTargets = new ConcurrentHashMap<>();
+    private static final Object NO_TARGET = new Object();
 
-    @SuppressWarnings("rawtypes")
-    private final Map<ActorMsg, CompletableFuture> responseFutures = new ConcurrentHashMap<>();
 
+    // 等待响应的请求，键是请求的sequentialId。
+    // 只保存future，不保存请求，请求的内容在发送后就可以被回收。sendThen可能在其它线程中调用，访问时需要加锁。
+    private final LongObjectHashMap<ActorCompletableFuture<?>> responseFutures = new LongObjectHashMap<>();
+
+    private final ActorInbox inbox;
     private final ActorOutbox outbox;
+    // 请求超时使用ActorSystem的定时器，加入ActorSystem时设置
+    private volatile ActorTimer timer = null;
+    // 加入ActorSystem之前发送的请求的超时，加入时开始计时
+    private final List<Runnable> pendingTimeouts = new ArrayList<>();
     ActorResponseSupport(ActorInbox inbox, ActorOutbox outbox) {
         responseHandlers = new HashMap<>();
+        this.inbox = inbox;
         this.outbox = outbox;
         ResponseMessageConsumer responseMessageConsumer = new ResponseMessageConsumer();
         inbox.addActorListener(RESPONSE, responseMessageConsumer, ActorMsg.class);
+        inbox.addActorListener(RESPONSE_TIMEOUT, new ResponseTimeoutConsumer(), ActorMsg.class);
     }
 
     <T> CompletableFuture<T> send(String addr, String topic, ActorRejectPolicy rejectPolicy, Object... payloads){
+        return send(addr, topic, 0L, TimeUnit.MILLISECONDS, rejectPolicy, payloads);
+    }
+
+    /**
+     * 发送请求，超时后future以TimeoutException异常结束
+     * @param timeout 超时时间，小于等于0表示不超时
+     */
+    <T> CompletableFuture<T> send(String addr, String topic, long timeout, TimeUnit timeUnit, ActorRejectPolicy rejectPolicy, Object... payloads){
         ActorCompletableFuture<T> future = new ActorCompletableFuture<>();
         ActorMsg request = this.outbox.createMsg(addr, topic, ActorMsg.Response.REQUIRED, rejectPolicy, payloads);
-        responseFutures.put(request, future);
+        final long id = request.getSequentialId();
+        synchronized (responseFutures) {
+            responseFutures.put(id, future);
+        }
+        future.setCancelHook(() -> removeFuture(id, future));
+        if (timeout > 0) {
+            scheduleTimeout(future, id, addr, topic, timeout, timeUnit);
+        }
         this.outbox.send(request);
         return future;
     }
 
+    /**
+     * 等待响应的请求数量
+     */
+    int getPendingResponses() {
+        synchronized (responseFutures) {
+            return responseFutures.size();
+        }
+    }
+
+    private void scheduleTimeout(ActorCompletableFuture<?> future, long id, String addr, String topic, long timeout, TimeUnit timeUnit) {
+        ActorTimer t = timer;
+        if (null == t) {
+            synchronized (pendingTimeouts) {
+                t = timer;
+                if (null == t) {
+                    pendingTimeouts.add(() -> {
+                        if (!future.isDone()) {
+                            scheduleTimeout(future, id, addr, topic, timeout, timeUnit);
+                        }
+                    });
+                    return;
+                }
+            }
+        }
+        t.start();
+        future.setTimeout(t.schedule(task -> onTimeout(id, addr, topic), timeout, 0L, timeUnit));
+    }
+
+    /**
+     * 加入ActorSystem时设置定时器，调度之前发送的请求的超时
+     */
+    void attachTimer(ActorTimer timer) {
+        List<Runnable> timeouts;
+        synchronized (pendingTimeouts) {
+            this.timer = timer;
+            timeouts = new ArrayList<>(pendingTimeouts);
+            pendingTimeouts.clear();
+        }
+        timeouts.forEach(Runnable::run);
+    }
+
+    private ActorCompletableFuture<?> removeFuture(long id) {
+        synchronized (responseFutures) {
+            return responseFutures.remove(id);
+        }
+    }
+
+    private void removeFuture(long id, ActorCompletableFuture<?> future) {
+        synchronized (responseFutures) {
+            responseFutures.remove(id, future);
+        }
+    }
+
+    // 在定时器线程中执行，交给Actor线程处理超时
+    private void onTimeout(long id, String addr, String topic) {
+        try {
+            inbox.receive(new ActorMsg(0L, inbox.getMyAddr(), inbox.getMyAddr(), RESPONSE_TIMEOUT, id, addr, topic));
+        } catch (IllegalStateException e) {
+            // 收件箱满了，直接结束请求
+            processTimeout(id, addr, topic);
+        }
+    }
+
+    private void processTimeout(long id, String addr, String topic) {
+        CompletableFuture<?> future = removeFuture(id);
+        if (null != future) {
+            future.completeExceptionally(new TimeoutException("Request timeout, addr: " + addr + ", topic: " + topic + "."));
+        }
+    }
+
     void addTopicHandlerFunction(String topic, Consumer<ActorMsg> handler) {
         responseHandlers.put(topic, handler);
     }
@@ -57,6 +158,7 @@ class ActorResponseSupport {
     void setHandlerInstance(Object handlerInstance) {
         this.handlerInstance = handlerInstance;
         this.annotationListeners = ActorUtils.scanActionListeners(handlerInstance, ActorResponseListener.class);
+        this.defaultResponseTargets.clear();
     }
 
     void replyException(ActorMsg request, Throwable throwable) {
@@ -77,12 +179,32 @@ class ActorResponseSupport {
 
 
     private void processResponse(ActorMsg response) {
-        ActorMsg request = response.getRequest();
-        if (request != null) {
-            // 调用future
-            if (responseFutures.containsKey(request)) {
+        if (!ActorEvents.responseEnabled) {
+            doProcessResponse(response);
+            return;
+        }
+        ActorJfrEvents.ResponseEvent event = new ActorJfrEvents.ResponseEvent();
+        event.begin();
+        try {
+            doProcessResponse(response);
+        } finally {
+            event.end();
+            event.actor = inbox.getMyAddr();
+            event.responder = response.getSender();
+            event.topic = response.getRequestTopic();
+            event.pendingRequests = getPendingResponses();
+            event.exceptional = null != response.getThrowable();
+            event.commit();
+        }
+    }
 
-                CompletableFuture<?> future = responseFutures.remove(request);
+    private void doProcessResponse(ActorMsg response) {
+        String requestTopic = response.getRequestTopic();
+        if (requestTopic != null) {
+            // 调用future
+            ActorCompletableFuture<?> future = removeFuture(response.getCorrelationId());
+            if (null != future) {
+                future.cancelTimeout();
                 if (response.getThrowable() != null) {
                     future.completeExceptionally(response.getThrowable());
                 } else {
@@ -91,7 +213,7 @@ class ActorResponseSupport {
                 return;
             }
             // 显式注册的
-            Consumer<ActorMsg> handler = responseHandlers.get(request.getTopic());
+            Consumer<ActorMsg> handler = responseHandlers.get(requestTopic);
             if (handler != null) {
                 handler.accept(response);
                 return;
@@ -99,28 +221,25 @@ class ActorResponseSupport {
             if (handlerInstance != null) {
                 try {
                     // 注解注册的
-                    if (null != annotationListeners && annotationListeners.containsKey(request.getTopic())){
+                    if (null != annotationListeners && annotationListeners.containsKey(requestTopic)){
                         // 通过注解注册的方法
 
-                        List<InvocationTarget> invocationTargets = annotationListeners.get(request.getTopic());
+                        List<InvocationTarget> invocationTargets = annotationListeners.get(requestTopic);
                         if (null != invocationTargets) {
                             for (InvocationTarget target: invocationTargets) {
-                                Method method = target.getMethod();
-                                method.setAccessible(true);
-                                method.invoke(handlerInstance, response);
+                                target.invokeWithMsg(response);
                             }
                             return;
                         }
                     }
                     // 默认的响应方法
-                    Method method = handlerInstance.getClass().getDeclaredMethod(request.getTopic() + "Response", ActorMsg.class);
-                    method.setAccessible(true);
-                    method.invoke(handlerInstance, response);
-                    return;
-                } catch (NoSuchMethodException ignored) {
-                    // nothing to do
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    logger.warn("Invoke response handler failed, method: {}!", request.getTopic() + "Response", e);
+                    InvocationTarget target = getDefaultResponseTarget(requestTopic);
+                    if (null != target) {
+                        target.invokeWithMsg(response);
+                        return;
+                    }
+                } catch (IllegalArgumentException | InvocationTargetException e) {
+                    logger.warn("Invoke response handler failed, method: {}!", requestTopic + "Response", e);
                     return;
                 }
             }
@@ -133,10 +252,29 @@ class ActorResponseSupport {
         }
     }
 
+    private InvocationTarget getDefaultResponseTarget(String topic) {
+        Object target = defaultResponseTargets.computeIfAbsent(topic, t -> {
+            try {
+                Method method = handlerInstance.getClass().getDeclaredMethod(t + "Response", ActorMsg.class);
+                return new InvocationTarget(handlerInstance, method);
+            } catch (NoSuchMethodException ignored) {
+                return NO_TARGET;
+            }
+        });
+        return target == NO_TARGET ? null : (InvocationTarget) target;
+    }
+
     private class ResponseMessageConsumer implements Consumer<ActorMsg> {
         @Override
         public void accept(@ActorMessage ActorMsg actorMsg) {
             processResponse(actorMsg);
         }
     }
+
+    private class ResponseTimeoutConsumer implements Consumer<ActorMsg> {
+        @Override
+        public void accept(@ActorMessage ActorMsg actorMsg) {
+            processTimeout(actorMsg.<Long>getPayload(0), actorMsg.getPayload(1), actorMsg.getPayload(2));
+        }
+    }
 }
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 
 public class ActorSystem{
@@ -12,22 +13,86 @@ public class ActorSystem{
     private final Map<String, ActorInbox> inboxMap = new HashMap<>();
     private final List<ActorThread> actorThreadList;
     private final static int DEFAULT_ACTOR_THREAD_COUNT = 1;
+    private final static int DEFAULT_THROUGHPUT = 1;
+    private final static long DEFAULT_SCHEDULER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final static int DEFAULT_TRACE_BUFFER_SIZE = 4096;
     private final ScheduleActor scheduleActor;
     private final List<Actor> actorList;
     private final String name;
     private final PubSubActor pubSubActor = new PubSubActor();
     private final Thread shutdownThread;
+    // 虚拟时间模式下决定消息处理顺序的随机数，非虚拟时间模式为null
+    private final Random random;
+    // 虚拟时钟，单位纳秒
+    private volatile long virtualNanos = 0L;
+    // 虚拟时间模式下有待处理消息的收件箱和发件箱，偶数是发件箱，奇数是收件箱
+    private int [] candidates;
+    // 消息跟踪，没有开启时为null
+    private final ActorTracer tracer;
+    // 没有开启JMX时为null
+    private final ActorJmx jmx;
+    // 没有开启Prometheus指标输出时为null
+    private final PrometheusExporter prometheusExporter;
+    // 没有开启看门狗时为null
+    private final ActorWatchdog watchdog;
 
-    private ActorSystem(int threadCount, List<Actor> actorList, String name) {
+    private ActorSystem(int threadCount, List<Actor> actorList, String name, ActorDispatchMode dispatchMode, WaitStrategy waitStrategy, boolean directDelivery, int throughput, long timeSliceNanos, long schedulerTickNanos, Random random, ActorTracer tracer, boolean enableJmx, int prometheusPort, long watchdogThresholdNanos) {
         this.name = null == name ? "" : name;
-        this.scheduleActor = new ScheduleActor(this.name);
+        this.random = random;
+        this.tracer = tracer;
+        if (null == random) {
+            this.scheduleActor = new ScheduleActor(this.name, schedulerTickNanos, TimeUnit.NANOSECONDS, this::send);
+        } else {
+            ActorTimer timer = ActorTimer.manual("ActorScheduler" + (this.name.isEmpty() ? "" : ("-" + this.name)),
+                    schedulerTickNanos, TimeUnit.NANOSECONDS, () -> virtualNanos);
+            this.scheduleActor = new ScheduleActor(timer, random, this::send);
+        }
         this.actorList = new ArrayList<>(actorList.size() + 2);
         this.actorList.add(pubSubActor.getActor());
         this.actorList.add(scheduleActor.getActor());
         this.actorList.addAll(actorList);
+        this.actorList.forEach(actor -> actor.applyDefaultTurn(throughput, timeSliceNanos));
         this.actorList.forEach(this::addActor);
+        if (directDelivery) {
+            this.actorList.forEach(actor -> actor.getOutbox().setPostman(this::send));
+        }
+
+
+        if (null != random) {
+            // 虚拟时间模式下没有ActorThread，由调用者线程驱动
+            this.actorThreadList = Collections.emptyList();
+            this.candidates = new int[this.actorList.size() * 2];
+        } else if (dispatchMode == ActorDispatchMode.SCAN) {
+            this.actorThreadList = createScanThreads(threadCount, waitStrategy);
+        } else {
+            this.actorThreadList = createReadyQueueThreads(threadCount, dispatchMode, waitStrategy);
+        }
+        // 虚拟时间模式下没有ActorThread，不需要看门狗
+        if (watchdogThresholdNanos > 0 && !this.actorThreadList.isEmpty()) {
+            this.watchdog = new ActorWatchdog(this.name, watchdogThresholdNanos, this.actorThreadList);
+        } else {
+            this.watchdog = null;
+        }
+        if (enableJmx) {
+            this.jmx = new ActorJmx();
+            jmx.register(this.name, dispatchMode, this.actorList, this.actorThreadList);
+        } else {
+            this.jmx = null;
+        }
+        if (prometheusPort >= 0) {
+            this.prometheusExporter = new PrometheusExporter(this.name, this.actorList, this.actorThreadList, scheduleActor, watchdog);
+            prometheusExporter.start(prometheusPort);
+        } else {
+            this.prometheusExporter = null;
+        }
+        start();
+        shutdownThread = new Thread(this::doStop);
+        // add shutdown hook
+        Runtime.getRuntime().addShutdownHook(shutdownThread);
 
+    }
 
+    private List<ActorThread> createScanThreads(int threadCount, WaitStrategy waitStrategy) {
         List<List<ActorInbox>> threadInboxList = new ArrayList<>(threadCount);
         for (int i = 0; i < threadCount; i++) {
             threadInboxList.add(new ArrayList<>());
@@ -38,15 +103,16 @@ public class ActorSystem{
         }
         int threadIndex = 0;
 
-        this.actorThreadList = new ArrayList<>(threadCount);
+        List<ActorThread> actorThreadList = new ArrayList<>(threadCount);
 
         for (Actor actor: this.actorList) {
             if (actor.isPrivateThread()) {
                 ActorThread actorThread = ActorThread.builder().actorSystem(this)
                         .name("ActorThread-" + (this.name.isEmpty() ? "" : (this.name + "-")) + actor.getAddr())
+                        .waitStrategy(waitStrategy)
                         .addInbox(actor.getInbox())
                         .addOutbox(actor.getOutbox()).build();
-                this.actorThreadList.add(actorThread);
+                actorThreadList.add(actorThread);
             } else {
                 threadInboxList.get(threadIndex++ % threadCount).add(actor.getInbox());
                 threadOutboxList.get(threadIndex++ % threadCount).add(actor.getOutbox());
@@ -55,16 +121,51 @@ public class ActorSystem{
 
         for (int i = 0; i < threadCount; i++) {
             ActorThread.Builder builder = ActorThread.builder().actorSystem(this)
-                    .name("ActorThread-" + (this.name.isEmpty() ? "" : (this.name + "-")) + i);
+                    .name("ActorThread-" + (this.name.isEmpty() ? "" : (this.name + "-")) + i)
+                    .waitStrategy(waitStrategy);
             threadInboxList.get(i).forEach(builder::addInbox);
             threadOutboxList.get(i).forEach(builder::addOutbox);
-            this.actorThreadList.add(builder.build());
+            actorThreadList.add(builder.build());
+        }
+        return actorThreadList;
+    }
+
+    private List<ActorThread> createReadyQueueThreads(int threadCount, ActorDispatchMode dispatchMode, WaitStrategy waitStrategy) {
+        List<List<ActorMailbox>> threadMailboxList = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            threadMailboxList.add(new ArrayList<>());
+        }
+        int threadIndex = 0;
+
+        List<ActorThread> actorThreadList = new ArrayList<>(threadCount);
+
+        for (Actor actor: this.actorList) {
+            ActorMailbox mailbox = new ActorMailbox(actor);
+            if (actor.isPrivateThread()) {
+                ActorThread actorThread = ActorThread.builder().actorSystem(this)
+                        .name("ActorThread-" + (this.name.isEmpty() ? "" : (this.name + "-")) + actor.getAddr())
+                        .dispatchMode(dispatchMode)
+                        .waitStrategy(waitStrategy)
+                        .addMailbox(mailbox).build();
+                actorThreadList.add(actorThread);
+            } else {
+                threadMailboxList.get(threadIndex++ % threadCount).add(mailbox);
+            }
         }
-        start();
-        shutdownThread = new Thread(this::doStop);
-        // add shutdown hook
-        Runtime.getRuntime().addShutdownHook(shutdownThread);
 
+        List<ActorThread> sharedThreadList = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            ActorThread.Builder builder = ActorThread.builder().actorSystem(this)
+                    .name("ActorThread-" + (this.name.isEmpty() ? "" : (this.name + "-")) + i)
+                    .dispatchMode(dispatchMode)
+                    .waitStrategy(waitStrategy);
+            threadMailboxList.get(i).forEach(builder::addMailbox);
+            sharedThreadList.add(builder.build());
+        }
+        // 私有线程的Actor不参与窃取
+        sharedThreadList.forEach(actorThread -> actorThread.setSiblings(sharedThreadList));
+        actorThreadList.addAll(sharedThreadList);
+        return actorThreadList;
     }
 
     private String name() {
@@ -73,6 +174,10 @@ public class ActorSystem{
 
     private void addActor(Actor actor) {
         inboxMap.put(actor.getInbox().getMyAddr(), actor.getInbox());
+        actor.attachTimer(scheduleActor.getTimer());
+        if (null != tracer) {
+            actor.getOutbox().setTracer(tracer);
+        }
         actor.getInbox().getSubscribedTopics().forEach(topic -> pubSubActor.subTopic(topic, actor));
         actor.getInbox().getSchedulers().forEach(scheduleActor::addTask);
     }
@@ -87,8 +192,172 @@ public class ActorSystem{
         inbox.receive(msg);
     }
 
+    /**
+     * 虚拟时间模式下，处理一个消息。
+     * 有多个收件箱或者发件箱有待处理的消息时，用随机数选择其中一个，相同的种子得到相同的处理顺序；
+     * 没有消息时，将虚拟时钟推进到最近的定时任务的到期时间，执行到期的定时任务。
+     * @return 处理了消息或者定时任务返回true，没有消息也没有定时任务返回false
+     */
+    public boolean step() {
+        checkVirtualTime();
+        return processRandomMsg() || advanceClock(Long.MAX_VALUE);
+    }
+
+    /**
+     * 虚拟时间模式下，将虚拟时钟推进指定的时长，处理这段时间内的所有消息和定时任务。
+     * 虚拟时钟直接跳到下一个定时任务的到期时间，不需要真正等待，可以用很短的时间模拟很长时间的运行。
+     * @param duration 时长
+     * @param timeUnit 时间单位
+     * @return 处理的消息数量
+     */
+    public long runFor(long duration, TimeUnit timeUnit) {
+        checkVirtualTime();
+        long deadline = virtualNanos + timeUnit.toNanos(duration);
+        long count = 0L;
+        while (true) {
+            if (processRandomMsg()) {
+                count++;
+            } else if (!advanceClock(deadline)) {
+                break;
+            }
+        }
+        virtualNanos = deadline;
+        return count;
+    }
+
+    /**
+     * 当前时间，虚拟时间模式下返回从ActorSystem创建开始经过的虚拟时间，否则返回System.nanoTime()
+     * @param timeUnit 时间单位
+     * @return 当前时间
+     */
+    public long now(TimeUnit timeUnit) {
+        return timeUnit.convert(null == random ? System.nanoTime() : virtualNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkVirtualTime() {
+        if (null == random) {
+            throw new IllegalStateException(name() + " is not in virtual time mode!");
+        }
+    }
+
+    private boolean processRandomMsg() {
+        int count = 0;
+        for (int i = 0; i < actorList.size(); i++) {
+            Actor actor = actorList.get(i);
+            if (!actor.outboxCleared()) {
+                candidates[count++] = i << 1;
+            }
+            if (!actor.inboxCleared()) {
+                candidates[count++] = (i << 1) | 1;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        int candidate = candidates[random.nextInt(count)];
+        Actor actor = actorList.get(candidate >> 1);
+        if ((candidate & 1) == 0) {
+            actor.getOutbox().consumeOneMsg(this::send);
+        } else {
+            actor.getInbox().processOneMsg();
+        }
+        return true;
+    }
+
+    // 推进虚拟时钟到最近的定时任务的到期时间，没有定时任务或者超过deadline时不推进
+    private boolean advanceClock(long deadline) {
+        ActorTimer timer = scheduleActor.getTimer();
+        long next = timer.nextExpiration();
+        if (next == Long.MAX_VALUE || next > deadline) {
+            return false;
+        }
+        if (next > virtualNanos) {
+            virtualNanos = next;
+        }
+        timer.expire(virtualNanos);
+        return true;
+    }
+
+    /**
+     * 每个ActorThread的时间分布：处理消息、转发消息、扫描空队列和等待的时间，以及线程的CPU时间。
+     * 可以根据线程的占用率决定ActorThread的数量，或者比较调度的开销和处理消息的时间。
+     * @return 每个ActorThread的统计，虚拟时间模式下返回空列表
+     */
+    public List<ActorThreadStats> getThreadStats() {
+        List<ActorThreadStats> statsList = new ArrayList<>(actorThreadList.size());
+        actorThreadList.forEach(thread -> statsList.add(thread.getStats()));
+        return statsList;
+    }
+
+    /**
+     * 所有ActorThread的统计的合计，见{@link #getThreadStats()}
+     * @return 名称为"total"的合计
+     */
+    public ActorThreadStats getThreadStatsTotal() {
+        return ActorThreadStats.sum("total", getThreadStats());
+    }
+
+    /**
+     * 处理时间超过看门狗阈值的消息数量，见{@link Builder#watchdog(long, TimeUnit)}
+     * @return 按Actor地址和主题分组的数量，没有开启看门狗时返回空的Map
+     */
+    public Map<String, Map<String, Long>> getSlowHandlerCounts() {
+        return null == watchdog ? Collections.emptyMap() : watchdog.getSlowHandlerCounts();
+    }
+
+    /**
+     * 所有Actor按主题统计的各个阶段的耗时，见{@link Actor#getLatencySnapshots()}
+     * @param reset 是否在读取的同时清零
+     * @return 所有有数据的Actor、主题和阶段
+     */
+    public List<LatencySnapshot> getLatencySnapshots(boolean reset) {
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        actorList.forEach(actor -> snapshots.addAll(actor.getLatencySnapshots(reset)));
+        return snapshots;
+    }
+
+    public List<LatencySnapshot> getLatencySnapshots() {
+        return getLatencySnapshots(false);
+    }
+
+    /**
+     * 清零所有Actor的耗时统计
+     */
+    public void resetLatencies() {
+        actorList.forEach(Actor::resetLatencies);
+    }
+
+    /**
+     * Prometheus指标输出监听的端口
+     * @return 端口，没有开启或者已经停止时返回-1
+     */
+    public int getPrometheusPort() {
+        return null == prometheusExporter ? -1 : prometheusExporter.getPort();
+    }
+
+    /**
+     * 被采样的消息的跟踪记录，按traceId和时间排序，同一个traceId的记录是同一个消息（或者请求和它的响应）经过的各个阶段。
+     * 需要通过{@link Builder#traceSampleRate(int)}开启跟踪，否则返回空列表。
+     * @return 跟踪记录
+     */
+    public List<TraceRecord> getTraces() {
+        return null == tracer ? Collections.emptyList() : tracer.snapshot();
+    }
+
+    /**
+     * 丢弃已有的跟踪记录
+     */
+    public void clearTraces() {
+        if (null != tracer) {
+            tracer.clear();
+        }
+    }
+
     private void start() {
         actorThreadList.forEach(ActorThread::start);
+        if (null != watchdog) {
+            watchdog.start();
+        }
     }
 
     private boolean hasMessages() {
@@ -111,6 +380,9 @@ public class ActorSystem{
             for (ActorThread actorThread : actorThreadList) {
                 actorThread.stop();
             }
+            if (null != watchdog) {
+                watchdog.stop();
+            }
 
             // 处理所有剩余的消息，直到全部消息都处理完成。
             while (hasMessages()) {
@@ -127,6 +399,12 @@ public class ActorSystem{
                     }
                 });
             }
+            if (null != jmx) {
+                jmx.unregister();
+            }
+            if (null != prometheusExporter) {
+                prometheusExporter.stop();
+            }
             logger.info("{} stopped.", name());
         } catch (InterruptedException e) {
             logger.warn("Stop actor system exception!", e);
@@ -141,6 +419,18 @@ public class ActorSystem{
         private int threadCount = DEFAULT_ACTOR_THREAD_COUNT;
         private final List<Actor> actorList = new ArrayList<>();
         private String name = null;
+        private ActorDispatchMode dispatchMode = ActorDispatchMode.SCAN;
+        private WaitStrategy waitStrategy = null;
+        private boolean directDelivery = false;
+        private int throughput = DEFAULT_THROUGHPUT;
+        private long timeSliceNanos = 0L;
+        private long schedulerTickNanos = DEFAULT_SCHEDULER_TICK_NANOS;
+        private Long seed = null;
+        private int traceSampleRate = 0;
+        private int traceBufferSize = DEFAULT_TRACE_BUFFER_SIZE;
+        private boolean enableJmx = false;
+        private int prometheusPort = -1;
+        private long watchdogThresholdNanos = 0L;
 
         public Builder threadCount(int threadCount) {
             this.threadCount = threadCount;
@@ -158,7 +448,163 @@ public class ActorSystem{
         }
 
         public ActorSystem build() {
-            return new ActorSystem(threadCount, actorList, name);
+            return new ActorSystem(threadCount, actorList, name, dispatchMode, waitStrategy == null ? new BlockingWaitStrategy() : waitStrategy, directDelivery, throughput, timeSliceNanos, schedulerTickNanos, null == seed ? null : new Random(seed),
+                    traceSampleRate > 0 ? new ActorTracer(traceSampleRate, traceBufferSize) : null, enableJmx, prometheusPort, watchdogThresholdNanos);
+        }
+
+        /**
+         * 设置定时任务时间轮的精度，默认为1毫秒。
+         * 定时任务的执行时间误差不超过一个tick，tick越大，时间轮线程醒来的次数越少。
+         * @param tick 时间轮每一格的时间跨度
+         * @param timeUnit 时间单位
+         * @return Builder
+         */
+        public Builder schedulerTick(long tick, TimeUnit timeUnit) {
+            if (tick <= 0) {
+                throw new IllegalArgumentException("tick must be positive!");
+            }
+            this.schedulerTickNanos = timeUnit.toNanos(tick);
+            return this;
+        }
+
+        /**
+         * 开启慢处理函数的看门狗。
+         * 一个消息的处理时间超过阈值时，打印处理它的ActorThread的调用栈，例如阻塞在IO上的处理函数，
+         * 它会拖慢共用同一个ActorThread的所有Actor。处理时间超过阈值的消息按Actor和主题计数，
+         * 见{@link ActorSystem#getSlowHandlerCounts()}。默认不开启，虚拟时间模式下不生效。
+         * @param threshold 处理时间的阈值
+         * @param timeUnit 时间单位
+         * @return Builder
+         */
+        public Builder watchdog(long threshold, TimeUnit timeUnit) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("threshold must be positive!");
+            }
+            this.watchdogThresholdNanos = timeUnit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * 为ActorSystem、每个ActorThread和每个Actor注册MXBean，可以通过JConsole等工具查看队列中的消息数量、
+         * 收发消息的速率、拒绝的次数和线程的忙闲时间。默认不开启，ActorSystem停止时注销。
+         * @return Builder
+         */
+        public Builder enableJmx() {
+            this.enableJmx = true;
+            return this;
+        }
+
+        /**
+         * 开启Prometheus指标输出，在本机地址的指定端口上通过 http://127.0.0.1:port/metrics 输出文本格式的指标，
+         * 包括收发的消息数量、队列中的消息数量、等待响应的请求数量、定时任务数量、线程的忙闲时间和各个阶段的耗时。
+         * 默认不开启，ActorSystem停止时关闭。
+         * @param port 端口，0表示随机选择一个可用的端口，实际的端口可以通过{@link ActorSystem#getPrometheusPort()}获取
+         * @return Builder
+         */
+        public Builder enablePrometheus(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Invalid port: " + port);
+            }
+            this.prometheusPort = port;
+            return this;
+        }
+
+        /**
+         * 开启消息跟踪，每个Actor每发送sampleRate个消息采样一个，被采样的消息在经过的每个阶段用System.nanoTime()记录时间戳，
+         * 通过{@link ActorSystem#getTraces()}获取。没有被采样的消息几乎没有额外的开销。默认不开启。
+         * @param sampleRate 采样率，例如1000表示每1000个消息采样一个，1表示跟踪所有消息
+         * @return Builder
+         */
+        public Builder traceSampleRate(int sampleRate) {
+            if (sampleRate <= 0) {
+                throw new IllegalArgumentException("sampleRate must be positive!");
+            }
+            this.traceSampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * 设置每个线程保存跟踪记录的缓冲区大小，默认为4096条，写满后覆盖最早的记录
+         * @param bufferSize 缓冲区可以保存的记录数量
+         * @return Builder
+         */
+        public Builder traceBufferSize(int bufferSize) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("bufferSize must be positive!");
+            }
+            this.traceBufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * 开启虚拟时间模式，用于模拟和可以重现的性能测试。
+         * 虚拟时间模式下不启动ActorThread，由调用者通过{@link ActorSystem#step()}或者{@link ActorSystem#runFor(long, TimeUnit)}
+         * 在调用者线程中处理消息；定时任务、延迟任务和请求超时使用虚拟时钟，相同的种子得到相同的消息处理顺序。
+         * 单线程处理消息，不能使用阻塞的拒绝策略。
+         * @param seed 随机数种子
+         * @return Builder
+         */
+        public Builder virtualTime(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * 设置Actor每轮最多处理的消息数量的默认值，默认为1，即每轮从每个队列中处理一个消息。
+         * 可以通过Actor.Builder为单个Actor设置。
+         * @param throughput 每轮最多处理的消息数量
+         * @return Builder
+         */
+        public Builder throughput(int throughput) {
+            this.throughput = throughput;
+            return this;
+        }
+
+        /**
+         * 设置Actor每轮最长处理时间的默认值，默认为0，不限制。只在throughput大于1时生效。
+         * 可以通过Actor.Builder为单个Actor设置。
+         * @param timeSlice 每轮最长的处理时间
+         * @param timeUnit 时间单位
+         * @return Builder
+         */
+        public Builder timeSlice(long timeSlice, TimeUnit timeUnit) {
+            this.timeSliceNanos = timeUnit.toNanos(timeSlice);
+            return this;
+        }
+
+        /**
+         * 开启直接投递模式。
+         * 开启后发送消息时直接放入收件人的收件箱，减少一次入队、出队和线程唤醒；
+         * 只有收件人的收件箱已满时，消息才会放入发件箱，由ActorThread稍后重试投递。
+         * @param directDelivery 是否开启直接投递
+         * @return Builder
+         */
+        public Builder directDelivery(boolean directDelivery) {
+            this.directDelivery = directDelivery;
+            return this;
+        }
+
+        /**
+         * 设置ActorThread没有消息可以处理时的等待策略，默认为BlockingWaitStrategy。
+         * 同一个ActorSystem中的所有ActorThread共享同一个策略实例。
+         * @param waitStrategy 等待策略
+         * @return Builder
+         */
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * 设置ActorThread调度Actor的方式，默认为SCAN。
+         * Actor数量多且大部分时间空闲时，使用READY_QUEUE可以避免遍历空的队列；
+         * 各个Actor负载不均衡时，使用WORK_STEALING可以让空闲的线程分担繁忙线程的Actor。
+         * @param dispatchMode 调度方式
+         * @return Builder
+         */
+        public Builder dispatchMode(ActorDispatchMode dispatchMode) {
+            this.dispatchMode = dispatchMode;
+            return this;
         }
 
         public Builder name(String name) {
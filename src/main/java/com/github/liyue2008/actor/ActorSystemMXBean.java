@@ -0,0 +1,34 @@
+package com.github.liyue2008.actor;
+
+/**
+ * ActorSystem的JMX接口，通过{@link ActorSystem.Builder#enableJmx()}开启
+ */
+public interface ActorSystemMXBean {
+    String getName();
+
+    String getDispatchMode();
+
+    int getActorCount();
+
+    int getThreadCount();
+
+    /**
+     * 所有Actor收件箱中的消息总数
+     */
+    long getInboxDepth();
+
+    /**
+     * 所有Actor发件箱中的消息总数
+     */
+    long getOutboxDepth();
+
+    /**
+     * 所有Actor从收件箱中取出处理的消息总数
+     */
+    long getProcessedCount();
+
+    /**
+     * 每秒处理的消息数量，按两次读取之间（至少1秒）的平均值计算
+     */
+    double getProcessRate();
+}
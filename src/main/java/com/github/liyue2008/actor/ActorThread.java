@@ -1,80 +1,308 @@
 package com.github.liyue2008.actor;
 
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public class ActorThread implements Runnable {
 
     private final ActorSystem actorSystem;
 
-    private final Object ring = new Object();
-
     private final List<ActorInbox> inboxList;
 
     private final List<ActorOutbox> outboxList;
 
+    private final List<ActorMailbox> mailboxList;
+
+    // 就绪队列，只在READY_QUEUE和WORK_STEALING模式下使用。
+    // 本线程从队头取，其它线程从队尾窃取。
+    private final Deque<ActorMailbox> readyQueue = new ConcurrentLinkedDeque<>();
+
+    // WORK_STEALING模式下，可以窃取的其它线程
+    private List<ActorThread> siblings = Collections.emptyList();
+
+    private final ActorDispatchMode dispatchMode;
+
+    private final WaitStrategy waitStrategy;
+
+    private final WaitContext waitContext;
+
+    private final Consumer<ActorMsg> postman;
 
     private final Thread thread;
 
-    private ActorThread(ActorSystem actorSystem, List<ActorInbox> inboxList, List<ActorOutbox> outboxList, String name) {
+    // 开启看门狗时记录正在处理的消息，在线程启动之前设置
+    private ActorWatchdog.HandlerWatch handlerWatch = null;
+
+    private ActorThread(ActorSystem actorSystem, List<ActorInbox> inboxList, List<ActorOutbox> outboxList, List<ActorMailbox> mailboxList, ActorDispatchMode dispatchMode, WaitStrategy waitStrategy, String name) {
         this.actorSystem = actorSystem;
         this.inboxList = Collections.unmodifiableList(inboxList);
         this.outboxList = Collections.unmodifiableList(outboxList);
-        inboxList.forEach(inbox -> inbox.setRing(ring));
-        outboxList.forEach(outbox -> outbox.setRing(ring));
+        this.mailboxList = Collections.unmodifiableList(mailboxList);
+        this.dispatchMode = dispatchMode;
+        this.waitStrategy = waitStrategy;
+        this.postman = actorSystem::send;
         this.thread = new Thread(this, name);
         thread.setDaemon(true);
+        this.waitContext = new WaitContext(thread, this::hasMessage);
+        inboxList.forEach(inbox -> inbox.setRing(this::ring));
+        outboxList.forEach(outbox -> outbox.setRing(this::ring));
+        mailboxList.forEach(mailbox -> mailbox.attach(this));
 
 
     }
 
     public void start() {
         thread.start();
-
+        // 处理启动之前就已经收到的消息
+        mailboxList.forEach(ActorMailbox::schedule);
     }
 
-    private boolean stopFlag = false;
+    private volatile boolean stopFlag = false;
+
+    // 线程时间的分布，单位纳秒，只有本线程写入。
+    // 处理：处理收件箱中消息的时间；转发：将发件箱中的消息派送到收件箱的时间；
+    // 扫描：查找消息但没有找到的时间；等待：在WaitStrategy中等待的时间
+    private volatile long handlerNanos = 0L;
+    private volatile long forwardNanos = 0L;
+    private volatile long scanNanos = 0L;
+    private volatile long parkNanos = 0L;
+    // 当前阶段的开始时间，只在本线程中访问
+    private long phaseStart;
 
     public void stop() throws InterruptedException {
         stopFlag = true;
-        synchronized (ring) {
-            ring.notify();
-        }
+        waitStrategy.signal(waitContext);
         thread.join();
     }
+
+    // 只有线程正在等待时才需要唤醒
+    private void ring() {
+        if (waitContext.isWaiting()) {
+            waitStrategy.signal(waitContext);
+        }
+    }
+
+    String getName() {
+        return thread.getName();
+    }
+
+    long getParkNanos() {
+        return parkNanos;
+    }
+
+    void setHandlerWatch(ActorWatchdog.HandlerWatch handlerWatch) {
+        this.handlerWatch = handlerWatch;
+    }
+
+    ActorWatchdog.HandlerWatch getHandlerWatch() {
+        return handlerWatch;
+    }
+
+    StackTraceElement[] getStackTrace() {
+        return thread.getStackTrace();
+    }
+
+    long getHandlerNanos() {
+        return handlerNanos;
+    }
+
+    long getForwardNanos() {
+        return forwardNanos;
+    }
+
+    long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * 线程的CPU时间，来自ThreadMXBean
+     * @return CPU时间，单位纳秒，JVM不支持或者没有开启线程CPU时间统计、线程没有启动或者已经结束时返回-1
+     */
+    long getCpuNanos() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadCpuTimeSupported() || !threadMXBean.isThreadCpuTimeEnabled()) {
+            return -1L;
+        }
+        return threadMXBean.getThreadCpuTime(thread.getId());
+    }
+
+    ActorThreadStats getStats() {
+        return new ActorThreadStats(getName(), handlerNanos, forwardNanos, scanNanos, parkNanos, getCpuNanos());
+    }
+
+    ActorDispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    void setSiblings(List<ActorThread> siblings) {
+        List<ActorThread> list = new ArrayList<>(siblings);
+        list.remove(this);
+        this.siblings = Collections.unmodifiableList(list);
+    }
+
+    void schedule(ActorMailbox mailbox) {
+        readyQueue.addLast(mailbox);
+        if (waitContext.isWaiting()) {
+            ring();
+        } else if (dispatchMode == ActorDispatchMode.WORK_STEALING) {
+            // 本线程正忙，唤醒一个空闲的线程来窃取
+            for (ActorThread sibling : siblings) {
+                if (sibling.waitContext.isWaiting()) {
+                    sibling.ring();
+                    break;
+                }
+            }
+        }
+    }
+
     @Override
     public void run() {
         ThreadLocal<ActorThreadContext> contextThreadLocal = new ThreadLocal<>();
         contextThreadLocal.set(new ActorThreadContext(true));
+        phaseStart = System.nanoTime();
         while (!stopFlag) {
-            boolean hasMessage = false;
-
-            for (ActorInbox inbox : inboxList) {
-                if (inbox.processOneMsg()) {
-                    hasMessage = true;
+            boolean hasMessage = dispatchMode == ActorDispatchMode.SCAN ? processAll() : processReadyQueue();
+            if (hasMessage) {
+                waitContext.onBusy();
+            } else {
+                waitContext.onIdle();
+                try {
+                    waitStrategy.waitFor(waitContext);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+                long now = System.nanoTime();
+                parkNanos += now - phaseStart;
+                phaseStart = now;
+            }
+        }
+//        logger.info("{} stopped.", Thread.currentThread().getName());
+    }
+
+    private boolean processAll() {
+        boolean handled = false;
+        for (ActorInbox inbox : inboxList) {
+            if (inbox.processMsgs(handlerWatch)) {
+                handled = true;
+            }
+        }
+        long inboxDone = System.nanoTime();
+        boolean forwarded = false;
+        for (ActorOutbox outbox: outboxList) {
+            if (outbox.consumeMsgs(postman)) {
+                forwarded = true;
             }
-            for (ActorOutbox outbox: outboxList) {
-                if (outbox.consumeOneMsg(actorSystem::send)) {
-                    hasMessage = true;
+        }
+        account(handled, inboxDone, forwarded);
+        return handled || forwarded;
+    }
+
+    // 处理了消息的阶段计入处理或转发时间，没有消息的阶段计入扫描时间。
+    // SCAN模式下按阶段统计，处理了消息的阶段中扫描空收件箱的时间也计入处理时间。
+    private void account(boolean handled, long inboxDone, boolean forwarded) {
+        long now = System.nanoTime();
+        long inboxNanos = inboxDone - phaseStart;
+        long outboxNanos = now - inboxDone;
+        phaseStart = now;
+        if (handled) {
+            handlerNanos += inboxNanos;
+        } else {
+            scanNanos += inboxNanos;
+        }
+        if (forwarded) {
+            forwardNanos += outboxNanos;
+        } else {
+            scanNanos += outboxNanos;
+        }
+    }
+
+    private boolean processReadyQueue() {
+        ActorMailbox mailbox = readyQueue.pollFirst();
+        if (null == mailbox && dispatchMode == ActorDispatchMode.WORK_STEALING) {
+            mailbox = steal();
+        }
+        if (null == mailbox) {
+            long now = System.nanoTime();
+            scanNanos += now - phaseStart;
+            phaseStart = now;
+            return false;
+        }
+        try {
+            boolean handled = mailbox.processInbox(handlerWatch);
+            long inboxDone = System.nanoTime();
+            boolean forwarded = mailbox.processOutbox(postman);
+            account(handled, inboxDone, forwarded);
+        } finally {
+            mailbox.done();
+        }
+        return true;
+    }
+
+
+
+    /**
+     * 从其它线程就绪队列的队尾窃取一个Actor，从随机的位置开始遍历，避免所有线程都去窃取同一个线程。
+     * Actor在就绪队列中时不会被处理，取出后只有窃取者处理它，因此仍然保证Actor的消息处理是单线程的。
+     * @return 窃取到的Actor，没有可以窃取的返回null
+     */
+    private ActorMailbox steal() {
+        int size = siblings.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            ActorMailbox mailbox = siblings.get((start + i) % size).readyQueue.pollLast();
+            if (null != mailbox) {
+                mailbox.migrate(this);
+                return mailbox;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 挂起之前检查是否有需要处理的消息
+     */
+    private boolean hasMessage() {
+        if (stopFlag) {
+            return true;
+        }
+        if (dispatchMode == ActorDispatchMode.SCAN) {
+            for (ActorInbox inbox : inboxList) {
+                if (!inbox.cleared()) {
+                    return true;
                 }
             }
-            if (!hasMessage) {
-                synchronized (ring) {
-                    try {
-                        ring.wait(10);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+            for (ActorOutbox outbox : outboxList) {
+                if (!outbox.cleared()) {
+                    return true;
                 }
             }
+            return false;
         }
-//        logger.info("{} stopped.", Thread.currentThread().getName());
+        return !readyQueue.isEmpty() || hasStealableMailbox();
     }
 
-
+    private boolean hasStealableMailbox() {
+        if (dispatchMode != ActorDispatchMode.WORK_STEALING) {
+            return false;
+        }
+        for (ActorThread sibling : siblings) {
+            if (!sibling.readyQueue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     static Builder builder() {
         return new Builder();
@@ -84,7 +312,11 @@ public class ActorThread implements Runnable {
         private final List<ActorInbox> inboxList = new ArrayList<>();
 
         private final List<ActorOutbox> outboxList = new ArrayList<>();
+
+        private final List<ActorMailbox> mailboxList = new ArrayList<>();
         private ActorSystem actorSystem;
+        private ActorDispatchMode dispatchMode = ActorDispatchMode.SCAN;
+        private WaitStrategy waitStrategy = new BlockingWaitStrategy();
 
         Builder actorSystem(ActorSystem actorSystem) {
             this.actorSystem = actorSystem;
@@ -103,8 +335,22 @@ public class ActorThread implements Runnable {
             outboxList.add(outbox);
             return this;
         }
+
+        Builder addMailbox(ActorMailbox mailbox) {
+            mailboxList.add(mailbox);
+            return this;
+        }
+
+        Builder dispatchMode(ActorDispatchMode dispatchMode) {
+            this.dispatchMode = dispatchMode;
+            return this;
+        }
+        Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
         ActorThread build() {
-            return new ActorThread(actorSystem, inboxList, outboxList, name);
+            return new ActorThread(actorSystem, inboxList, outboxList, mailboxList, dispatchMode, waitStrategy, name);
         }
     }
 }
@@ -0,0 +1,38 @@
+package com.github.liyue2008.actor;
+
+/**
+ * ActorThread的JMX接口，通过{@link ActorSystem.Builder#enableJmx()}开启。时间的单位是毫秒。
+ */
+public interface ActorThreadMXBean {
+    String getName();
+
+    /**
+     * 处理收件箱中消息的时间
+     */
+    long getHandlerTime();
+
+    /**
+     * 将发件箱中的消息派送到收件箱的时间
+     */
+    long getForwardTime();
+
+    /**
+     * 查找消息但没有找到的时间
+     */
+    long getScanTime();
+
+    /**
+     * 在WaitStrategy中等待消息的时间
+     */
+    long getParkTime();
+
+    /**
+     * 线程的CPU时间，不可用时返回-1
+     */
+    long getCpuTime();
+
+    /**
+     * 处理和转发消息的时间占比，取值0-1，按两次读取之间（至少1秒）计算，接近1说明线程已经饱和
+     */
+    double getUtilization();
+}
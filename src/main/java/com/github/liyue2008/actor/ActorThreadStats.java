@@ -0,0 +1,124 @@
+package com.github.liyue2008.actor;
+
+import java.util.List;
+
+/**
+ * ActorThread的时间分布，单位纳秒，从线程启动开始累计。
+ * 两次读取的差值见{@link #minus(ActorThreadStats)}，可以用来计算一段时间内线程的占用率，决定ActorThread的数量。
+ */
+public final class ActorThreadStats {
+    private final String name;
+    private final long handlerNanos;
+    private final long forwardNanos;
+    private final long scanNanos;
+    private final long parkNanos;
+    private final long cpuNanos;
+
+    ActorThreadStats(String name, long handlerNanos, long forwardNanos, long scanNanos, long parkNanos, long cpuNanos) {
+        this.name = name;
+        this.handlerNanos = handlerNanos;
+        this.forwardNanos = forwardNanos;
+        this.scanNanos = scanNanos;
+        this.parkNanos = parkNanos;
+        this.cpuNanos = cpuNanos;
+    }
+
+    /**
+     * 所有线程的合计，有一个线程的CPU时间不可用时，合计的CPU时间为-1
+     */
+    static ActorThreadStats sum(String name, List<ActorThreadStats> statsList) {
+        long handler = 0L, forward = 0L, scan = 0L, park = 0L, cpu = 0L;
+        for (ActorThreadStats stats : statsList) {
+            handler += stats.handlerNanos;
+            forward += stats.forwardNanos;
+            scan += stats.scanNanos;
+            park += stats.parkNanos;
+            cpu = cpu < 0 || stats.cpuNanos < 0 ? -1L : cpu + stats.cpuNanos;
+        }
+        return new ActorThreadStats(name, handler, forward, scan, park, cpu);
+    }
+
+    /**
+     * 线程名称，合计时为"total"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 处理收件箱中消息的时间
+     */
+    public long getHandlerNanos() {
+        return handlerNanos;
+    }
+
+    /**
+     * 将发件箱中的消息派送到收件箱的时间
+     */
+    public long getForwardNanos() {
+        return forwardNanos;
+    }
+
+    /**
+     * 查找消息但没有找到的时间，是调度的开销
+     */
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * 在WaitStrategy中等待消息的时间
+     */
+    public long getParkNanos() {
+        return parkNanos;
+    }
+
+    /**
+     * 线程的CPU时间，来自ThreadMXBean，不可用时返回-1
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * 统计到的全部时间
+     */
+    public long getTotalNanos() {
+        return handlerNanos + forwardNanos + scanNanos + parkNanos;
+    }
+
+    /**
+     * 处理和转发消息的时间占比，取值0-1，接近1说明线程已经饱和
+     */
+    public double getOccupancy() {
+        long total = getTotalNanos();
+        return total > 0 ? (double) (handlerNanos + forwardNanos) / total : 0.0;
+    }
+
+    /**
+     * 与之前读取的统计的差值，即两次读取之间的时间分布
+     * @param previous 之前读取的同一个线程（或者合计）的统计
+     * @return 差值
+     */
+    public ActorThreadStats minus(ActorThreadStats previous) {
+        return new ActorThreadStats(name,
+                handlerNanos - previous.handlerNanos,
+                forwardNanos - previous.forwardNanos,
+                scanNanos - previous.scanNanos,
+                parkNanos - previous.parkNanos,
+                cpuNanos < 0 || previous.cpuNanos < 0 ? -1L : cpuNanos - previous.cpuNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ActorThreadStats{" +
+                "name='" + name + '\'' +
+                ", handlerNanos=" + handlerNanos +
+                ", forwardNanos=" + forwardNanos +
+                ", scanNanos=" + scanNanos +
+                ", parkNanos=" + parkNanos +
+                ", cpuNanos=" + cpuNanos +
+                ", occupancy=" + getOccupancy() +
+                '}';
+    }
+}
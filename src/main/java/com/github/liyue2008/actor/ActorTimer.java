@@ -0,0 +1,249 @@
+package com.github.liyue2008.actor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于分层时间轮的定时器。
+ * 一个线程驱动时间轮，只在最近的一个槽到期时醒来；到期的任务在这个线程中执行，不能执行耗时的操作。
+ * 周期任务每次执行后按固定频率重新添加到时间轮。
+ */
+class ActorTimer {
+    private static final Logger logger = LoggerFactory.getLogger(ActorTimer.class);
+    static final int DEFAULT_WHEEL_SIZE = 64;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition headChanged = lock.newCondition();
+    // 有任务的槽，按到期时间排序
+    private final PriorityQueue<TimingWheel.Bucket> bucketQueue = new PriorityQueue<>(Comparator.comparingLong(TimingWheel.Bucket::getExpiration));
+    private final TimingWheel timingWheel;
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final String name;
+    // 手动驱动的定时器不启动线程
+    private final boolean manual;
+    private Thread thread = null;
+    private volatile boolean started = false;
+    private volatile boolean stopped = false;
+
+    ActorTimer(String name, long tick, TimeUnit timeUnit) {
+        this(name, tick, timeUnit, DEFAULT_WHEEL_SIZE, System::nanoTime);
+    }
+
+    /**
+     * @param clock 时钟，单位纳秒
+     */
+    ActorTimer(String name, long tick, TimeUnit timeUnit, int wheelSize, LongSupplier clock) {
+        this(name, tick, timeUnit, wheelSize, clock, false);
+    }
+
+    private ActorTimer(String name, long tick, TimeUnit timeUnit, int wheelSize, LongSupplier clock, boolean manual) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("tick must be positive!");
+        }
+        this.name = name;
+        this.clock = clock;
+        this.manual = manual;
+        this.tickNanos = timeUnit.toNanos(tick);
+        this.timingWheel = new TimingWheel(tickNanos, wheelSize, clock.getAsLong(), bucketQueue);
+    }
+
+    /**
+     * 手动驱动的定时器，不启动线程，由调用者推进时钟并调用{@link #expire(long)}执行到期的任务
+     * @param clock 时钟，单位纳秒
+     */
+    static ActorTimer manual(String name, long tick, TimeUnit timeUnit, LongSupplier clock) {
+        return new ActorTimer(name, tick, timeUnit, DEFAULT_WHEEL_SIZE, clock, true);
+    }
+
+    /**
+     * 添加定时任务
+     * @param action 到期后执行的操作，参数是任务本身
+     * @param delay 延迟时间
+     * @param period 周期，小于等于0表示只执行一次，小于tick时按tick执行
+     * @param timeUnit 时间单位
+     * @return 定时任务，可以取消
+     */
+    TimerTask schedule(Consumer<TimerTask> action, long delay, long period, TimeUnit timeUnit) {
+        if (stopped) {
+            throw new IllegalStateException("Timer " + name + " has been stopped");
+        }
+        long periodNanos = period > 0 ? Math.max(tickNanos, timeUnit.toNanos(period)) : 0L;
+        TimerTask task = new TimerTask(this, action, clock.getAsLong() + timeUnit.toNanos(Math.max(0L, delay)), periodNanos);
+        if (!add(task)) {
+            // 已经到期，直接执行
+            run(task);
+        }
+        return task;
+    }
+
+    private boolean add(TimerTask task) {
+        lock.lock();
+        try {
+            TimingWheel.Bucket head = bucketQueue.peek();
+            boolean added = timingWheel.add(task);
+            if (added && head != bucketQueue.peek()) {
+                headChanged.signal();
+            }
+            return added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(TimerTask task) {
+        lock.lock();
+        try {
+            if (null != task.bucket) {
+                task.bucket.remove(task);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 执行所有到期的任务
+     * @param now 当前时间，单位纳秒
+     * @return 执行的任务数量
+     */
+    int expire(long now) {
+        int count = 0;
+        List<TimerTask> expired = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                TimingWheel.Bucket bucket = bucketQueue.peek();
+                if (null == bucket || bucket.getExpiration() > now) {
+                    break;
+                }
+                bucketQueue.poll();
+                timingWheel.advanceClock(bucket.getExpiration());
+                bucket.flush(task -> {
+                    if (!timingWheel.add(task) && !task.isCancelled()) {
+                        expired.add(task);
+                    }
+                });
+            } finally {
+                lock.unlock();
+            }
+            for (TimerTask task : expired) {
+                run(task);
+            }
+            count += expired.size();
+            expired.clear();
+        }
+        return count;
+    }
+
+    private void run(TimerTask task) {
+        while (!task.isCancelled()) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("Timer task exception: ", t);
+            }
+            if (!task.isPeriodic() || task.isCancelled() || stopped) {
+                return;
+            }
+            // 按固定频率执行，落后超过一个周期时从当前时间开始计算，不补执行错过的周期
+            long now = clock.getAsLong();
+            task.expiration += task.getPeriodNanos();
+            if (task.expiration < now) {
+                task.expiration = now + task.getPeriodNanos();
+            }
+            if (add(task)) {
+                return;
+            }
+        }
+    }
+
+    long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * 最近的一个槽的到期时间
+     * @return 到期时间，单位纳秒，没有任务时返回Long.MAX_VALUE
+     */
+    long nextExpiration() {
+        lock.lock();
+        try {
+            TimingWheel.Bucket bucket = bucketQueue.peek();
+            return null == bucket ? Long.MAX_VALUE : bucket.getExpiration();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * 启动驱动时间轮的线程，手动驱动的定时器不启动线程
+     */
+    void start() {
+        if (!started && !manual) {
+            doStart();
+        }
+    }
+
+    private synchronized void doStart() {
+        if (null == thread && !stopped) {
+            started = true;
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            expire(clock.getAsLong());
+            lock.lock();
+            try {
+                TimingWheel.Bucket bucket = bucketQueue.peek();
+                if (stopped) {
+                    return;
+                } else if (null == bucket) {
+                    headChanged.await();
+                } else {
+                    long waitNanos = bucket.getExpiration() - clock.getAsLong();
+                    if (waitNanos > 0) {
+                        headChanged.awaitNanos(waitNanos);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    synchronized void stop() throws InterruptedException {
+        stopped = true;
+        lock.lock();
+        try {
+            headChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (null != thread) {
+            thread.join();
+            thread = null;
+        }
+    }
+}
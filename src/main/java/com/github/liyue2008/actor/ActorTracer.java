@@ -0,0 +1,147 @@
+package com.github.liyue2008.actor;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 采样跟踪消息的生命周期。
+ * 每个发件箱每sampleRate个消息采样一个，被采样的消息在每个阶段用System.nanoTime()记录时间戳，
+ * 写入当前线程预先分配的环形缓冲区，不加锁也不分配内存，缓冲区写满后覆盖最早的记录。
+ * 没有被采样的消息只需要判断一次traceId。
+ * 缓冲区通过弱引用关联所属的线程，线程结束后缓冲区在下一次snapshot()时被移除。
+ */
+class ActorTracer {
+    private final int sampleRate;
+    private final int bufferSize;
+    private final AtomicLong traceIds = new AtomicLong(0L);
+    private final List<TraceBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<TraceBuffer> localBuffer = ThreadLocal.withInitial(this::newBuffer);
+
+    /**
+     * @param sampleRate 采样率，每sampleRate个消息采样一个
+     * @param bufferSize 每个线程的缓冲区可以保存的记录数量
+     */
+    ActorTracer(int sampleRate, int bufferSize) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate must be positive!");
+        }
+        int size = 1;
+        while (size < bufferSize) {
+            size <<= 1;
+        }
+        this.sampleRate = sampleRate;
+        this.bufferSize = size;
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    private TraceBuffer newBuffer() {
+        TraceBuffer buffer = new TraceBuffer(Thread.currentThread(), bufferSize);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * 开始跟踪一个消息
+     */
+    void start(ActorMsg msg) {
+        msg.getContext().startTrace(this, traceIds.incrementAndGet());
+        record(msg.getContext().getTraceId(), TraceStage.CREATED, msg, System.nanoTime());
+    }
+
+    void record(long traceId, TraceStage stage, ActorMsg msg, long nanoTime) {
+        localBuffer.get().record(traceId, stage, msg, nanoTime);
+    }
+
+    /**
+     * 所有线程中的跟踪记录，按traceId和时间排序。
+     * 已经结束的线程的记录在这一次返回后丢弃。
+     */
+    List<TraceRecord> snapshot() {
+        List<TraceRecord> records = new ArrayList<>();
+        for (TraceBuffer buffer : buffers) {
+            buffer.copyTo(records);
+            if (!buffer.isAlive()) {
+                buffers.remove(buffer);
+            }
+        }
+        records.sort(Comparator.comparingLong(TraceRecord::getTraceId).thenComparingLong(TraceRecord::getNanoTime));
+        return records;
+    }
+
+    /**
+     * 丢弃已有的记录
+     */
+    void clear() {
+        for (TraceBuffer buffer : buffers) {
+            buffer.cleared = buffer.written;
+        }
+    }
+
+    /**
+     * 一个线程的环形缓冲区，只有所属的线程写入，其它线程读取时检查读到的记录有没有被覆盖
+     */
+    private static class TraceBuffer {
+        private final WeakReference<Thread> thread;
+        private final String threadName;
+        private final long[] traceIds;
+        private final long[] nanoTimes;
+        private final TraceStage[] stages;
+        private final String[] senders;
+        private final String[] receivers;
+        private final String[] topics;
+        private final int mask;
+        // 写入的记录总数，写完一条记录后更新
+        private volatile long written = 0L;
+        private volatile long cleared = 0L;
+
+        private TraceBuffer(Thread thread, int size) {
+            this.thread = new WeakReference<>(thread);
+            this.threadName = thread.getName();
+            this.traceIds = new long[size];
+            this.nanoTimes = new long[size];
+            this.stages = new TraceStage[size];
+            this.senders = new String[size];
+            this.receivers = new String[size];
+            this.topics = new String[size];
+            this.mask = size - 1;
+        }
+
+        private boolean isAlive() {
+            Thread t = thread.get();
+            return null != t && t.isAlive();
+        }
+
+        private void record(long traceId, TraceStage stage, ActorMsg msg, long nanoTime) {
+            long w = written;
+            int i = (int) (w & mask);
+            traceIds[i] = traceId;
+            nanoTimes[i] = nanoTime;
+            stages[i] = stage;
+            senders[i] = msg.getSender();
+            receivers[i] = msg.getReceiver();
+            topics[i] = msg.getTopic();
+            written = w + 1;
+        }
+
+        private void copyTo(List<TraceRecord> records) {
+            long end = written;
+            long begin = Math.max(Math.max(0L, end - traceIds.length), cleared);
+            List<TraceRecord> copied = new ArrayList<>((int) Math.max(0L, end - begin));
+            for (long w = begin; w < end; w++) {
+                int i = (int) (w & mask);
+                copied.add(new TraceRecord(traceIds[i], stages[i], senders[i], receivers[i], topics[i], threadName, nanoTimes[i]));
+            }
+            // 复制的过程中被覆盖的记录不可信，丢弃。
+            // 所属的线程可能正在写下一条记录，written还没有更新，这条记录所在的槽也按已覆盖处理
+            long overwritten = written + 1 - traceIds.length - begin;
+            records.addAll(overwritten > 0 ? copied.subList((int) Math.min(overwritten, copied.size()), copied.size()) : copied);
+        }
+    }
+}
@@ -15,6 +15,10 @@ class ActorUtils {
         return scanActionListeners(instance, Collections.singleton(annotation));
     }
     static Map<String, List<InvocationTarget>> scanActionListeners(Object instance, Collection<Class<? extends Annotation>> annotations) {
+        ActorDispatcher dispatcher = ActorDispatchers.get(instance.getClass());
+        if (null != dispatcher) {
+            return ActorDispatchers.scan(instance, dispatcher, annotations);
+        }
         return Arrays.stream(instance.getClass().getDeclaredMethods())
                 .filter(method -> annotations.stream().anyMatch(method::isAnnotationPresent))
                 .reduce(new HashMap<>(), (map, method) -> {
@@ -0,0 +1,154 @@
+package com.github.liyue2008.actor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 慢处理函数的看门狗。
+ * 每个ActorThread记录正在处理的消息的Actor、主题和开始时间，看门狗线程定期检查，
+ * 一个消息的处理时间超过阈值时，打印ActorThread的调用栈，同一个消息只打印一次。
+ * 处理时间超过阈值的消息在处理完成时按Actor和主题计数。
+ */
+class ActorWatchdog {
+    private static final Logger logger = LoggerFactory.getLogger(ActorWatchdog.class);
+    private static final long MIN_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final long thresholdNanos;
+    private final List<ActorThread> actorThreads;
+    private final Map<String /* addr */, Map<String /* topic */, LongAdder>> slowHandlers = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean stopped = false;
+
+    ActorWatchdog(String name, long thresholdNanos, List<ActorThread> actorThreads) {
+        if (thresholdNanos <= 0) {
+            throw new IllegalArgumentException("threshold must be positive!");
+        }
+        this.thresholdNanos = thresholdNanos;
+        this.actorThreads = actorThreads;
+        actorThreads.forEach(actorThread -> actorThread.setHandlerWatch(new HandlerWatch(this, actorThread)));
+        this.thread = new Thread(this::run, "ActorWatchdog" + (name.isEmpty() ? "" : ("-" + name)));
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        stopped = true;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    // 每半个阈值检查一次，处理时间超过阈值的消息最迟在1.5倍阈值时被发现
+    private void run() {
+        long interval = Math.max(thresholdNanos / 2, MIN_CHECK_INTERVAL_NANOS);
+        while (!stopped) {
+            LockSupport.parkNanos(this, interval);
+            long now = System.nanoTime();
+            for (ActorThread actorThread : actorThreads) {
+                actorThread.getHandlerWatch().check(now);
+            }
+        }
+    }
+
+    private void onSlowHandler(String addr, String topic) {
+        slowHandlers.computeIfAbsent(addr, a -> new ConcurrentHashMap<>())
+                .computeIfAbsent(topic, t -> new LongAdder())
+                .increment();
+    }
+
+    private void onStuckHandler(ActorThread actorThread, String addr, String topic, long elapsedNanos) {
+        StackTraceElement[] stackTrace = actorThread.getStackTrace();
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement element : stackTrace) {
+            sb.append("\tat ").append(element).append('\n');
+        }
+        logger.warn("Slow handler, thread: {}, actor: {}, topic: {}, elapsed: {}ms, stack:\n{}",
+                actorThread.getName(), addr, topic, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), sb);
+        if (ActorEvents.stuckHandlerEnabled) {
+            ActorJfrEvents.StuckHandlerEvent event = new ActorJfrEvents.StuckHandlerEvent();
+            event.actorThread = actorThread.getName();
+            event.actor = addr;
+            event.topic = topic;
+            event.elapsed = elapsedNanos;
+            event.stack = sb.toString();
+            event.commit();
+        }
+    }
+
+    /**
+     * 处理时间超过阈值的消息数量
+     * @return 按Actor地址和主题分组的数量
+     */
+    Map<String, Map<String, Long>> getSlowHandlerCounts() {
+        Map<String, Map<String, Long>> counts = new HashMap<>(slowHandlers.size() * 2);
+        slowHandlers.forEach((addr, topics) -> {
+            Map<String, Long> topicCounts = new HashMap<>(topics.size() * 2);
+            topics.forEach((topic, count) -> topicCounts.put(topic, count.sum()));
+            counts.put(addr, topicCounts);
+        });
+        return counts;
+    }
+
+    /**
+     * 一个ActorThread正在处理的消息。
+     * 只有ActorThread写入，序号作为顺序锁：开始处理时序号变为奇数，处理完成后变为偶数。
+     * 看门狗在前后两次读到相同的奇数序号时，读到的Actor、主题和开始时间属于同一个正在处理的消息。
+     */
+    static class HandlerWatch {
+        private final ActorWatchdog watchdog;
+        private final ActorThread actorThread;
+        private String addr;
+        private String topic;
+        private long startNanos;
+        private volatile long seq = 0L;
+        // 已经报告过的消息的序号，只在看门狗线程中访问
+        private long reportedSeq = 0L;
+
+        private HandlerWatch(ActorWatchdog watchdog, ActorThread actorThread) {
+            this.watchdog = watchdog;
+            this.actorThread = actorThread;
+        }
+
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        void begin(String addr, String topic) {
+            this.addr = addr;
+            this.topic = topic;
+            this.startNanos = System.nanoTime();
+            seq++;
+        }
+
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        void end() {
+            long elapsed = System.nanoTime() - startNanos;
+            seq++;
+            if (elapsed > watchdog.thresholdNanos) {
+                watchdog.onSlowHandler(addr, topic);
+            }
+        }
+
+        private void check(long now) {
+            long s = seq;
+            if ((s & 1L) == 0L || s == reportedSeq) {
+                return;
+            }
+            String addr = this.addr;
+            String topic = this.topic;
+            long elapsed = now - startNanos;
+            if (s != seq || elapsed <= watchdog.thresholdNanos) {
+                return;
+            }
+            reportedSeq = s;
+            watchdog.onStuckHandler(actorThread, addr, topic, elapsed);
+        }
+    }
+}
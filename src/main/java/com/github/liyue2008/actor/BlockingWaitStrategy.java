@@ -0,0 +1,44 @@
+package com.github.liyue2008.actor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过锁和条件等待挂起线程的等待策略，空闲时CPU占用最低，是默认的等待策略。
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private static final long DEFAULT_MAX_WAIT_MS = 10L;
+    private final long maxWaitMs;
+
+    public BlockingWaitStrategy() {
+        this(DEFAULT_MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxWait 每次等待的最长时间，超时后线程会重新检查消息
+     * @param timeUnit 时间单位
+     */
+    public BlockingWaitStrategy(long maxWait, TimeUnit timeUnit) {
+        this.maxWaitMs = Math.max(1L, timeUnit.toMillis(maxWait));
+    }
+
+    @Override
+    public void waitFor(WaitContext context) throws InterruptedException {
+        synchronized (context) {
+            context.setWaiting(true);
+            try {
+                if (!context.hasMessage()) {
+                    context.wait(maxWaitMs);
+                }
+            } finally {
+                context.setWaiting(false);
+            }
+        }
+    }
+
+    @Override
+    public void signal(WaitContext context) {
+        synchronized (context) {
+            context.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 一直自旋的等待策略，消息延迟最低，但是每个ActorThread始终占用一个CPU核。
+ * 适用于线程数不超过CPU核数，并且对延迟要求非常高的场景。
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public void waitFor(WaitContext context) {
+        // 直接返回，开始新一轮处理
+    }
+
+    @Override
+    public void signal(WaitContext context) {
+        // 线程从不挂起，不需要唤醒
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.liyue2008.actor;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分发器中一个方法的描述，由注解处理器生成的代码创建。
+ */
+public final class DispatchMethod {
+    private final int index;
+    private final String name;
+    private final Class<?>[] parameterTypes;
+    private final boolean returnsVoid;
+    // 方法上的注解：ActorListener、ActorScheduler、ActorSubscriber或者ActorResponseListener，没有注解为null
+    private final Class<? extends Annotation> annotation;
+    private final String topic;
+    private final TimeUnit timeUnit;
+    private final long interval;
+    private final boolean coalesce;
+    private final boolean actorMessage;
+    private final boolean responseManually;
+    // 私有方法分发器无法直接调用，需要通过反射调用
+    private final boolean dispatchable;
+
+    private DispatchMethod(Builder builder) {
+        this.index = builder.index;
+        this.name = builder.name;
+        this.parameterTypes = builder.parameterTypes;
+        this.returnsVoid = builder.returnsVoid;
+        this.annotation = builder.annotation;
+        this.topic = builder.topic.isEmpty() ? builder.name : builder.topic;
+        this.timeUnit = builder.timeUnit;
+        this.interval = builder.interval;
+        this.coalesce = builder.coalesce;
+        this.actorMessage = builder.actorMessage;
+        this.responseManually = builder.responseManually;
+        this.dispatchable = builder.dispatchable;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes.clone();
+    }
+
+    Class<?>[] parameterTypes() {
+        return parameterTypes;
+    }
+
+    public boolean isReturnsVoid() {
+        return returnsVoid;
+    }
+
+    public Class<? extends Annotation> getAnnotation() {
+        return annotation;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public boolean isActorMessage() {
+        return actorMessage;
+    }
+
+    public boolean isResponseManually() {
+        return responseManually;
+    }
+
+    public boolean isDispatchable() {
+        return dispatchable;
+    }
+
+    public static Builder builder(int index, String name) {
+        return new Builder(index, name);
+    }
+
+    public static class Builder {
+        private final int index;
+        private final String name;
+        private Class<?>[] parameterTypes = new Class<?>[0];
+        private boolean returnsVoid = false;
+        private Class<? extends Annotation> annotation = null;
+        private String topic = "";
+        private TimeUnit timeUnit = TimeUnit.MILLISECONDS;
+        private long interval = 1000L;
+        private boolean coalesce = false;
+        private boolean actorMessage = false;
+        private boolean responseManually = false;
+        private boolean dispatchable = true;
+
+        private Builder(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        public Builder parameterTypes(Class<?>... parameterTypes) {
+            this.parameterTypes = parameterTypes;
+            return this;
+        }
+
+        public Builder returnsVoid() {
+            this.returnsVoid = true;
+            return this;
+        }
+
+        public Builder annotation(Class<? extends Annotation> annotation, String topic) {
+            this.annotation = annotation;
+            this.topic = topic;
+            return this;
+        }
+
+        public Builder schedule(TimeUnit timeUnit, long interval) {
+            this.timeUnit = timeUnit;
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder coalesce() {
+            this.coalesce = true;
+            return this;
+        }
+
+        public Builder actorMessage() {
+            this.actorMessage = true;
+            return this;
+        }
+
+        public Builder responseManually() {
+            this.responseManually = true;
+            return this;
+        }
+
+        public Builder notDispatchable() {
+            this.dispatchable = false;
+            return this;
+        }
+
+        public DispatchMethod build() {
+            return new DispatchMethod(this);
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.github.liyue2008.actor;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import com.github.liyue2008.actor.annotation.ActorMessage;
 import com.github.liyue2008.actor.annotation.ActorScheduler;
 import com.github.liyue2008.actor.annotation.ActorSubscriber;
+import com.github.liyue2008.actor.annotation.ResponseManually;
 
+/**
+ * 消息处理方法。
+ * 注册时将方法编译为MethodHandle，并预先计算参数类型等信息，处理消息时不再使用反射。
+ * 如果有编译期生成的分发器，直接通过分发器调用方法，此时没有对应的Method。
+ */
 class InvocationTarget {
 
     enum TargetType {
@@ -15,13 +27,30 @@ class InvocationTarget {
         SCHEDULER
     }
     private final Object target;
+    // 通过分发器调用的方法为null
     private final Method method;
+    private final String name;
     private final TargetType type;
     private final String topic;
 
     // for scheduler only
     private final TimeUnit timeUnit;
     private final long interval;
+    private final boolean coalesce;
+
+    private final Class<?>[] parameterTypes;
+    // 参数个数是1，且带有@ActorMessage注解，调用时传入整个消息
+    private final boolean takesActorMsg;
+    private final boolean returnsVoid;
+    private final boolean responseManually;
+    // 类型为 (Object[])Object，将消息内容展开为参数调用方法
+    private final MethodHandle spreadInvoker;
+    // 类型为 (Object)Object，只有一个参数的方法才有
+    private final MethodHandle singleInvoker;
+    // 编译期生成的分发器，没有时为null
+    private final ActorDispatcher dispatcher;
+    private final int dispatchIndex;
+
     public InvocationTarget(Object target, Method method, TargetType type, String topic) {
         this(target, method, type, topic, null, 0);
     }
@@ -29,51 +58,220 @@ class InvocationTarget {
     public InvocationTarget(Object target, Method method, TargetType type, String topic, TimeUnit timeUnit, long interval) {
         this.target = target;
         this.method = method;
+        this.name = method.getName();
         this.type = type;
         this.timeUnit = timeUnit;
         this.interval = interval;
+        this.coalesce = false;
         this.topic = topic;
+        this.parameterTypes = method.getParameterTypes();
+        this.takesActorMsg = takesActorMsg(method);
+        this.returnsVoid = void.class.equals(method.getReturnType());
+        this.responseManually = method.isAnnotationPresent(ResponseManually.class);
+        MethodHandle handle = compile(target, method);
+        this.spreadInvoker = handle.asSpreader(Object[].class, parameterTypes.length);
+        this.singleInvoker = parameterTypes.length == 1 ? handle : null;
+        this.dispatcher = null;
+        this.dispatchIndex = -1;
     }
     public InvocationTarget(Object target, Method method) {
         this.target = target;
         this.method = method;
+        this.name = method.getName();
         this.topic = ActorUtils.methodToTopic(method);
 
         if (method.isAnnotationPresent(ActorSubscriber.class)) {
             this.type = TargetType.SUBSCRIBER;
             timeUnit = null;
             interval = 0;
+            coalesce = false;
         } else if (method.isAnnotationPresent(ActorScheduler.class)) {
             this.type =  TargetType.SCHEDULER;
             ActorScheduler scheduler = method.getAnnotation(ActorScheduler.class);
             this.timeUnit = scheduler.timeUnit();
             this.interval = scheduler.interval();
+            this.coalesce = scheduler.coalesce();
         } else {
             this.type =  TargetType.LISTENER;
             timeUnit = null;
             interval = 0;
+            coalesce = false;
+        }
+        this.parameterTypes = method.getParameterTypes();
+        this.takesActorMsg = takesActorMsg(method);
+        this.returnsVoid = void.class.equals(method.getReturnType());
+        this.responseManually = method.isAnnotationPresent(ResponseManually.class);
+        MethodHandle handle = compile(target, method);
+        this.spreadInvoker = handle.asSpreader(Object[].class, parameterTypes.length);
+        this.singleInvoker = parameterTypes.length == 1 ? handle : null;
+        this.dispatcher = null;
+        this.dispatchIndex = -1;
+    }
+
+    InvocationTarget(Object target, ActorDispatcher dispatcher, DispatchMethod dispatchMethod) {
+        this.target = target;
+        this.method = null;
+        this.name = dispatchMethod.getName();
+        this.topic = dispatchMethod.getTopic();
+        if (dispatchMethod.getAnnotation() == ActorSubscriber.class) {
+            this.type = TargetType.SUBSCRIBER;
+        } else if (dispatchMethod.getAnnotation() == ActorScheduler.class) {
+            this.type = TargetType.SCHEDULER;
+        } else {
+            this.type = TargetType.LISTENER;
+        }
+        if (this.type == TargetType.SCHEDULER) {
+            this.timeUnit = dispatchMethod.getTimeUnit();
+            this.interval = dispatchMethod.getInterval();
+            this.coalesce = dispatchMethod.isCoalesce();
+        } else {
+            this.timeUnit = null;
+            this.interval = 0;
+            this.coalesce = false;
+        }
+        this.parameterTypes = dispatchMethod.parameterTypes();
+        this.takesActorMsg = parameterTypes.length == 1 && dispatchMethod.isActorMessage()
+                && ClassUtils.isAssignable(ActorMsg.class, parameterTypes[0]);
+        this.returnsVoid = dispatchMethod.isReturnsVoid();
+        this.responseManually = dispatchMethod.isResponseManually();
+        this.spreadInvoker = null;
+        this.singleInvoker = null;
+        this.dispatcher = dispatcher;
+        this.dispatchIndex = dispatchMethod.getIndex();
+    }
+
+    private static boolean takesActorMsg(Method method) {
+        return method.getParameterCount() == 1 && method.getParameters()[0].isAnnotationPresent(ActorMessage.class)
+                && ClassUtils.isAssignable(ActorMsg.class, method.getParameterTypes()[0]);
+    }
+
+    /**
+     * 将方法编译为参数和返回值都是Object的MethodHandle，基本类型的参数在调用时自动拆箱和拓宽，void方法返回null。
+     */
+    private static MethodHandle compile(Object target, Method method) {
+        try {
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                handle = handle.bindTo(target);
+            }
+            return MethodHandles.explicitCastArguments(handle, MethodType.genericMethodType(method.getParameterCount()));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can not access method: " + method, e);
+        }
+    }
+
+    /**
+     * 调用方法处理消息。
+     * 如果方法只有一个带@ActorMessage注解的参数，传入整个消息，否则将消息内容作为参数。
+     * @param msg 消息
+     * @return 方法的返回值，void方法返回null
+     * @throws InvocationTargetException 方法抛出了异常
+     * @throws IllegalArgumentException 参数不匹配
+     */
+    Object invoke(ActorMsg msg) throws InvocationTargetException {
+        if (takesActorMsg) {
+            return invokeWithMsg(msg);
+        }
+        Object[] payloads = msg.getPayloads();
+        if (payloads.length != parameterTypes.length) {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+        for (int i = 0; i < payloads.length; i++) {
+            if (null == payloads[i] && parameterTypes[i].isPrimitive()) {
+                throw new IllegalArgumentException("null can not be converted to " + parameterTypes[i]);
+            }
+        }
+        try {
+            if (null != dispatcher) {
+                return dispatcher.dispatch(target, dispatchIndex, payloads);
+            }
+            if (null != singleInvoker) {
+                return (Object) singleInvoker.invokeExact(payloads[0]);
+            }
+            return (Object) spreadInvoker.invokeExact(payloads);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * 将整个消息作为唯一的参数调用方法
+     * @param msg 消息
+     * @return 方法的返回值，void方法返回null
+     * @throws InvocationTargetException 方法抛出了异常
+     * @throws IllegalArgumentException 方法的参数个数不是1
+     */
+    Object invokeWithMsg(ActorMsg msg) throws InvocationTargetException {
+        if (parameterTypes.length != 1) {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+        try {
+            if (null != dispatcher) {
+                return dispatcher.dispatch(target, dispatchIndex, new Object[] {msg});
+            }
+            return (Object) singleInvoker.invokeExact((Object) msg);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
         }
     }
 
+    /**
+     * 判断方法签名是否和消息匹配
+     */
+    boolean isSignatureMatch(ActorMsg msg) {
+        if (takesActorMsg) {
+            // 优先看参数个数是否是1，且带有@ActorMessage注解
+            return true;
+        }
+        // 看参数个数和类型是否匹配
+        Object[] payloads = msg.getPayloads();
+        if (parameterTypes.length != payloads.length) {
+            return false;
+        }
+        for (int i = 0; i < payloads.length; i++) {
+            if (payloads[i] != null && !ClassUtils.isAssignable(payloads[i].getClass(), parameterTypes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断处理完消息后是否需要自动发送响应
+     */
+    boolean needResponse(ActorMsg msg) {
+        return (msg.getContext().getResponseConfig() == ActorMsg.Response.REQUIRED
+                || (msg.getContext().getResponseConfig() == ActorMsg.Response.DEFAULT && !returnsVoid)) && !responseManually;
+    }
+
     public Object getTarget() {
         return target;
     }
 
+    /**
+     * @return 方法，通过分发器调用的方法返回null
+     */
     public Method getMethod() {
         return method;
     }
 
+    public String getName() {
+        return name;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         InvocationTarget that = (InvocationTarget) o;
-        return Objects.equals(target, that.target) && Objects.equals(method, that.method);
+        return Objects.equals(target, that.target) && Objects.equals(method, that.method)
+                && Objects.equals(dispatcher, that.dispatcher) && dispatchIndex == that.dispatchIndex;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(target, method);
+        return Objects.hash(target, method, dispatcher, dispatchIndex);
     }
 
     public TargetType getType() {
@@ -92,4 +290,12 @@ class InvocationTarget {
     public long getInterval() {
         return interval;
     }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    int getParameterCount() {
+        return parameterTypes.length;
+    }
 }
@@ -0,0 +1,87 @@
+package com.github.liyue2008.actor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * 一个主题的消息处理方法，以及按消息内容运行时类型缓存的匹配结果。
+ * 同一个主题、相同类型的消息只需要匹配一次，之后直接从缓存中取出处理方法，不再分配内存。
+ * 只在处理消息的线程中访问，不是线程安全的；主题的处理方法变化时需要丢弃整个缓存。
+ */
+class InvocationTargetCache {
+    // 最多缓存的签名数量，超过后按顺序覆盖
+    private static final int MAX_ENTRIES = 8;
+    private static final Object NONE = new Object();
+    private static final Object AMBIGUOUS = new Object();
+
+    private final InvocationTarget[] targets;
+    // 消息内容的运行时类型，内容为null的位置类型也为null
+    private final Class<?>[][] keys = new Class<?>[MAX_ENTRIES][];
+    // 匹配结果：InvocationTarget、NONE或者AMBIGUOUS
+    private final Object[] values = new Object[MAX_ENTRIES];
+    private int size = 0;
+    private int next = 0;
+
+    InvocationTargetCache(List<InvocationTarget> targets) {
+        this.targets = targets.toArray(new InvocationTarget[0]);
+    }
+
+    /**
+     * 选择一个签名匹配的方法
+     * @param msg 消息
+     * @return 匹配的方法，没有匹配的返回null
+     * @throws InvocationTargetException 有多个方法匹配
+     */
+    InvocationTarget select(ActorMsg msg) throws InvocationTargetException {
+        Object[] payloads = msg.getPayloads();
+        for (int i = 0; i < size; i++) {
+            if (isKeyMatch(keys[i], payloads)) {
+                return toTarget(values[i]);
+            }
+        }
+        Object value = match(msg);
+        Class<?>[] key = new Class<?>[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            key[i] = payloads[i] == null ? null : payloads[i].getClass();
+        }
+        keys[next] = key;
+        values[next] = value;
+        next = (next + 1) % MAX_ENTRIES;
+        if (size < MAX_ENTRIES) {
+            size++;
+        }
+        return toTarget(value);
+    }
+
+    private static boolean isKeyMatch(Class<?>[] key, Object[] payloads) {
+        if (key.length != payloads.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != (payloads[i] == null ? null : payloads[i].getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object match(ActorMsg msg) {
+        InvocationTarget matched = null;
+        for (InvocationTarget target : targets) {
+            if (target.isSignatureMatch(msg)) {
+                if (null != matched) {
+                    return AMBIGUOUS;
+                }
+                matched = target;
+            }
+        }
+        return null == matched ? NONE : matched;
+    }
+
+    private static InvocationTarget toTarget(Object value) throws InvocationTargetException {
+        if (value == AMBIGUOUS) {
+            throw new InvocationTargetException(new IllegalStateException("More than one target matched."));
+        }
+        return value == NONE ? null : (InvocationTarget) value;
+    }
+}
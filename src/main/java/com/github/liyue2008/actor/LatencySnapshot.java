@@ -0,0 +1,93 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 某个Actor的某个主题在某个阶段的耗时分布，单位纳秒。
+ * 百分位的值是所在桶的上界，相对误差不超过12.5%。
+ */
+public final class LatencySnapshot {
+    private final String addr;
+    private final String topic;
+    private final LatencyType type;
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    LatencySnapshot(String addr, String topic, LatencyType type, long[] buckets, long sum, long max) {
+        this.addr = addr;
+        this.topic = topic;
+        this.type = type;
+        this.buckets = buckets;
+        long c = 0L;
+        for (long bucket : buckets) {
+            c += bucket;
+        }
+        this.count = c;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public String getAddr() {
+        return addr;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public LatencyType getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 所有耗时的总和，单位纳秒
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile 百分位，取值范围0-100
+     * @return 耗时，单位纳秒，没有数据时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{" +
+                "addr='" + addr + '\'' +
+                ", topic='" + topic + '\'' +
+                ", type=" + type +
+                ", count=" + count +
+                ", mean=" + (long) getMean() +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", max=" + max +
+                '}';
+    }
+}
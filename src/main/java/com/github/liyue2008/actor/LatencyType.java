@@ -0,0 +1,11 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 消息各个阶段的耗时
+ */
+public enum LatencyType {
+    OUTBOX_WAIT, // 在发件箱中等待投递的时间，统计在发送者
+    TRANSIT, // 从发件箱取出到放入收件箱的时间，统计在收件人
+    INBOX_WAIT, // 在收件箱中等待处理的时间，统计在收件人
+    HANDLER // 处理消息的时间，统计在收件人
+}
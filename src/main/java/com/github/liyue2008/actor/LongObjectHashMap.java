@@ -0,0 +1,141 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 以long为键的哈希表，开放寻址、线性探测，删除时后移元素，不需要墓碑。
+ * 键不需要装箱，也不会为每个元素分配节点。值不能为null。不是线程安全的。
+ */
+class LongObjectHashMap<V> {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+
+    LongObjectHashMap() {
+        this(16);
+    }
+
+    LongObjectHashMap(int initialCapacity) {
+        int capacity = 2;
+        while (capacity * LOAD_FACTOR < initialCapacity) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        for (int i = indexOf(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 之前的值，没有返回null
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (null == value) {
+            throw new NullPointerException("value");
+        }
+        int i = indexOf(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return 删除的值，没有返回null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int i = indexOf(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = null;
+                size--;
+                shiftBack(i);
+                return old;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 删除值为value的键，值不同时不删除
+     */
+    boolean remove(long key, Object value) {
+        if (get(key) != value) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    // 将删除位置之后同一探测序列中的元素前移，保证查找不会在空位提前结束
+    private void shiftBack(int deleted) {
+        int i = (deleted + 1) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            int home = indexOf(keys[i]);
+            // home不在(deleted, i]范围内时，元素可以移到deleted
+            if (((i - home) & mask) >= ((i - deleted) & mask)) {
+                keys[deleted] = keys[i];
+                values[deleted] = values[i];
+                values[i] = null;
+                deleted = i;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = indexOf(oldKeys[i]);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.liyue2008.actor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 收件箱或者发件箱的计数器：入队、出队的消息数量和队列满时被拒绝的消息数量
+ */
+class MailboxCounters {
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final LongAdder[] rejected = new LongAdder[ActorRejectPolicy.values().length];
+
+    MailboxCounters() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    void onEnqueue() {
+        enqueued.increment();
+    }
+
+    void onDequeue() {
+        dequeued.increment();
+    }
+
+    void onReject(ActorRejectPolicy rejectPolicy) {
+        rejected[rejectPolicy.ordinal()].increment();
+    }
+
+    long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    long getDequeued() {
+        return dequeued.sum();
+    }
+
+    long getRejected(ActorRejectPolicy rejectPolicy) {
+        return rejected[rejectPolicy.ordinal()].sum();
+    }
+
+    long getRejected() {
+        long sum = 0L;
+        for (LongAdder adder : rejected) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+}
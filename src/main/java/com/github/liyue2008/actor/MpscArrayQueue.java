@@ -0,0 +1,229 @@
+package com.github.liyue2008.actor;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 有界、基于数组的无锁多生产者单消费者队列。
+ * 生产者通过CAS竞争写入位置，入队不加锁也不分配节点；
+ * 消费者只能有一个线程（同一时刻），poll、peek、take等出队方法只能由消费者调用。
+ * 队列满时add抛出IllegalStateException，offer返回false，put等待直到有空闲位置，与LinkedBlockingQueue一致。
+ */
+class MpscArrayQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private static final long PARK_NANOS = 1000L;
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    // 下一个写入位置，生产者通过CAS竞争
+    private final AtomicLong producerIndex = new AtomicLong(0L);
+    // 下一个读取位置，只有消费者修改
+    private final AtomicLong consumerIndex = new AtomicLong(0L);
+    // 生产者缓存的写入上限，避免每次入队都读取consumerIndex
+    private volatile long producerLimit;
+
+    MpscArrayQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int length = 1;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        this.mask = length - 1;
+        this.buffer = new AtomicReferenceArray<>(length);
+        this.producerLimit = capacity;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long limit = producerLimit;
+        long p;
+        do {
+            p = producerIndex.get();
+            if (p >= limit) {
+                limit = consumerIndex.get() + capacity;
+                if (p >= limit) {
+                    return false;
+                }
+                producerLimit = limit;
+            }
+        } while (!producerIndex.compareAndSet(p, p + 1));
+        buffer.lazySet(index(p), e);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long c = consumerIndex.get();
+        int index = index(c);
+        E e = buffer.get(index);
+        if (null == e) {
+            if (c == producerIndex.get()) {
+                return null;
+            }
+            // 生产者已经占用了位置，但还没有写入元素
+            do {
+                e = buffer.get(index);
+            } while (null == e);
+        }
+        buffer.lazySet(index, null);
+        consumerIndex.lazySet(c + 1);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long c = consumerIndex.get();
+        int index = index(c);
+        E e = buffer.get(index);
+        if (null == e && c != producerIndex.get()) {
+            do {
+                e = buffer.get(index);
+            } while (null == e);
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        long after = consumerIndex.get();
+        while (true) {
+            long before = after;
+            long p = producerIndex.get();
+            after = consumerIndex.get();
+            if (before == after) {
+                return (int) (p - after);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            park();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            park();
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null) {
+            park();
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+        while ((e = poll()) == null) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            park();
+        }
+        return e;
+    }
+
+    private void park() throws InterruptedException {
+        LockSupport.parkNanos(this, PARK_NANOS);
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 弱一致性的只读迭代器，只用于查看队列中的元素
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final long start = consumerIndex.get();
+        final long end = producerIndex.get();
+        return new Iterator<E>() {
+            private long cursor = start;
+            private E next = advance();
+
+            private E advance() {
+                while (cursor < end) {
+                    E e = buffer.get(index(cursor++));
+                    if (null != e) {
+                        return e;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return null != next;
+            }
+
+            @Override
+            public E next() {
+                if (null == next) {
+                    throw new NoSuchElementException();
+                }
+                E e = next;
+                next = advance();
+                return e;
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.liyue2008.actor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 先自旋，再让出CPU，最后通过LockSupport挂起线程的等待策略。
+ * 唤醒只需要一次unpark，比BlockingWaitStrategy的开销更低。
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    private static final int DEFAULT_SPIN_TRIES = 100;
+    private static final int DEFAULT_YIELD_TRIES = 100;
+    private static final long DEFAULT_MAX_PARK_MS = 10L;
+    private final int spinTries;
+    private final int yieldTries;
+    private final long maxParkNanos;
+
+    public ParkingWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES, DEFAULT_YIELD_TRIES, DEFAULT_MAX_PARK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param spinTries 开始让出CPU之前自旋的次数
+     * @param yieldTries 开始挂起线程之前让出CPU的次数
+     * @param maxPark 每次挂起的最长时间，超时后线程会重新检查消息
+     * @param timeUnit 时间单位
+     */
+    public ParkingWaitStrategy(int spinTries, int yieldTries, long maxPark, TimeUnit timeUnit) {
+        this.spinTries = spinTries;
+        this.yieldTries = yieldTries;
+        this.maxParkNanos = timeUnit.toNanos(maxPark);
+    }
+
+    @Override
+    public void waitFor(WaitContext context) {
+        int idleCount = context.getIdleCount();
+        if (idleCount <= spinTries) {
+            return;
+        }
+        if (idleCount <= spinTries + yieldTries) {
+            Thread.yield();
+            return;
+        }
+        context.setWaiting(true);
+        try {
+            if (!context.hasMessage()) {
+                LockSupport.parkNanos(this, maxParkNanos);
+            }
+        } finally {
+            context.setWaiting(false);
+        }
+    }
+
+    @Override
+    public void signal(WaitContext context) {
+        LockSupport.unpark(context.getThread());
+    }
+}
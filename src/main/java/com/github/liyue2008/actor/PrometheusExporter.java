@@ -0,0 +1,203 @@
+package com.github.liyue2008.actor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * 以Prometheus文本格式输出ActorSystem的指标，使用JDK自带的HttpServer，只监听本机地址，路径为/metrics。
+ * 采集时只读取计数器和队列大小，不加锁，可以在满负载时每隔几秒采集一次。
+ * 耗时只统计开启了指标收集的Actor发出和收到的消息，见{@link Actor.Builder#enableMetric()}。
+ */
+class PrometheusExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final String system;
+    private final List<Actor> actors;
+    private final List<ActorThread> threads;
+    private final ScheduleActor scheduleActor;
+    // 没有开启看门狗时为null
+    private final ActorWatchdog watchdog;
+    private volatile HttpServer server = null;
+
+    PrometheusExporter(String system, List<Actor> actors, List<ActorThread> threads, ScheduleActor scheduleActor, ActorWatchdog watchdog) {
+        this.system = system;
+        this.actors = actors;
+        this.threads = threads;
+        this.scheduleActor = scheduleActor;
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * @param port 端口，0表示随机选择一个可用的端口
+     */
+    void start(int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Start prometheus exporter on port " + port + " failed!", e);
+        }
+        server.createContext("/metrics", this::handle);
+        // HttpServer的分发线程继承启动线程的daemon属性，在daemon线程中启动，避免没有调用stop时阻止JVM退出
+        Thread starter = new Thread(server::start, "PrometheusExporter-" + system);
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 监听的端口，已经停止时返回-1
+     */
+    int getPort() {
+        HttpServer server = this.server;
+        return null == server ? -1 : server.getAddress().getPort();
+    }
+
+    void stop() {
+        if (null != server) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        actorCounter(sb, "actor_messages_sent_total", "Messages sent by the actor.", a -> a.getOutbox().getCounters().getEnqueued());
+        actorCounter(sb, "actor_messages_processed_total", "Messages taken from the inbox and processed by the actor.", a -> a.getInbox().getCounters().getDequeued());
+        actorCounter(sb, "actor_inbox_rejected_total", "Deliveries rejected because the inbox was full.", a -> a.getInbox().getCounters().getRejected());
+
+        header(sb, "actor_outbox_rejected_total", "Sends rejected because the outbox was full, by reject policy.", "counter");
+        for (Actor actor : actors) {
+            for (ActorRejectPolicy rejectPolicy : ActorRejectPolicy.values()) {
+                sample(sb, "actor_outbox_rejected_total", actor, "policy", rejectPolicy.name(), actor.getOutbox().getCounters().getRejected(rejectPolicy));
+            }
+        }
+
+        queueDepth(sb, "actor_inbox_queue_depth", "Messages waiting in an inbox queue.", true);
+        queueDepth(sb, "actor_outbox_queue_depth", "Messages waiting in an outbox queue.", false);
+
+        header(sb, "actor_pending_requests", "Requests sent with sendThen still waiting for a response.", "gauge");
+        for (Actor actor : actors) {
+            sample(sb, "actor_pending_requests", actor, null, null, actor.getPendingResponses());
+        }
+
+        header(sb, "actor_scheduler_tasks", "Periodic scheduler tasks.", "gauge");
+        sb.append("actor_scheduler_tasks{system=\"").append(escape(system)).append("\"} ").append(scheduleActor.getTaskCount()).append('\n');
+
+        threadSeconds(sb, "actor_thread_handler_seconds_total", "Time the actor thread spent processing inbox messages.", ActorThread::getHandlerNanos);
+        threadSeconds(sb, "actor_thread_forward_seconds_total", "Time the actor thread spent forwarding outbox messages to inboxes.", ActorThread::getForwardNanos);
+        threadSeconds(sb, "actor_thread_scan_seconds_total", "Time the actor thread spent scanning empty queues.", ActorThread::getScanNanos);
+        threadSeconds(sb, "actor_thread_park_seconds_total", "Time the actor thread spent in the wait strategy.", ActorThread::getParkNanos);
+        threadSeconds(sb, "actor_thread_cpu_seconds_total", "CPU time of the actor thread.", ActorThread::getCpuNanos);
+
+        latency(sb);
+        slowHandlers(sb);
+        return sb.toString();
+    }
+
+    private void actorCounter(StringBuilder sb, String name, String help, ToLongFunction<Actor> value) {
+        header(sb, name, help, "counter");
+        for (Actor actor : actors) {
+            sample(sb, name, actor, null, null, value.applyAsLong(actor));
+        }
+    }
+
+    private void queueDepth(StringBuilder sb, String name, String help, boolean inbox) {
+        header(sb, name, help, "gauge");
+        for (Actor actor : actors) {
+            Map<String, Integer> sizes = inbox ? actor.getInbox().getQueueSizes() : actor.getOutbox().getQueueSizes();
+            for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+                sample(sb, name, actor, "queue", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void threadSeconds(StringBuilder sb, String name, String help, ToLongFunction<ActorThread> nanos) {
+        header(sb, name, help, "counter");
+        for (ActorThread thread : threads) {
+            long value = nanos.applyAsLong(thread);
+            if (value < 0) {
+                // 不可用
+                continue;
+            }
+            sb.append(name).append("{system=\"").append(escape(system)).append("\",thread=\"").append(escape(thread.getName())).append("\"} ")
+                    .append(value / 1e9).append('\n');
+        }
+    }
+
+    private void latency(StringBuilder sb) {
+        String name = "actor_latency_seconds";
+        header(sb, name, "Time spent by messages in each stage, by actor and topic.", "summary");
+        for (Actor actor : actors) {
+            for (LatencySnapshot snapshot : actor.getLatencySnapshots()) {
+                String labels = "{system=\"" + escape(system) + "\",actor=\"" + escape(snapshot.getAddr())
+                        + "\",topic=\"" + escape(snapshot.getTopic()) + "\",stage=\"" + snapshot.getType().name().toLowerCase(Locale.ROOT) + "\"";
+                for (double quantile : QUANTILES) {
+                    sb.append(name).append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                            .append(snapshot.getValueAtPercentile(quantile * 100) / 1e9).append('\n');
+                }
+                sb.append(name).append("_sum").append(labels).append("} ").append(snapshot.getSum() / 1e9).append('\n');
+                sb.append(name).append("_count").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+            }
+        }
+    }
+
+    private void slowHandlers(StringBuilder sb) {
+        if (null == watchdog) {
+            return;
+        }
+        String name = "actor_slow_handlers_total";
+        header(sb, name, "Messages whose handler ran longer than the watchdog threshold.", "counter");
+        watchdog.getSlowHandlerCounts().forEach((addr, topics) -> topics.forEach((topic, count) ->
+                sb.append(name).append("{system=\"").append(escape(system)).append("\",actor=\"").append(escape(addr))
+                        .append("\",topic=\"").append(escape(topic)).append("\"} ").append(count).append('\n')));
+    }
+
+    private static void header(StringBuilder sb, String name, String help, String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(StringBuilder sb, String name, Actor actor, String labelName, String labelValue, long value) {
+        sb.append(name).append("{system=\"").append(escape(system)).append("\",actor=\"").append(escape(actor.getAddr())).append('"');
+        if (null != labelName) {
+            sb.append(',').append(labelName).append("=\"").append(escape(labelValue)).append('"');
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
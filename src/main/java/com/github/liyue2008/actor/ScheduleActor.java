@@ -1,22 +1,48 @@
 package com.github.liyue2008.actor;
 
-import java.util.HashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.github.liyue2008.actor.annotation.ActorListener;
 
+/**
+ * 定时任务。
+ * 定时任务由分层时间轮驱动，到期时直接将消息放入目标Actor的收件箱，不经过Scheduler的发件箱。
+ * 收件箱满了时在下一个tick重试，不丢弃定时消息；合并的定时消息计入错过的次数。
+ * Actor的延迟任务不经过ScheduleActor，直接使用同一个时间轮，见{@link Actor#runDelay}。
+ */
 class ScheduleActor {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleActor.class);
     private final Actor actor= Actor.builder().addr("Scheduler").setHandlerInstance(this).build();
-    private ScheduledExecutorService executorService;
-    private final Map<String /* addr-topic */, ScheduledFuture<?>> runningTasks = new HashMap<>();
-    private boolean stopped = false;
-    private final String name;
+    private final ActorTimer timer;
+    private final Map<String /* addr-topic */, TimerTask> runningTasks = new ConcurrentHashMap<>();
+    private final Consumer<ActorMsg> postman;
+    // 虚拟时间模式下使用固定种子的随机数，保证定时任务的首次执行时间可以重现
+    private final Random random;
+    private volatile boolean stopped = false;
 
-    ScheduleActor(String name) {
-        this.name = name;
+    ScheduleActor(String name, long tick, TimeUnit tickUnit, Consumer<ActorMsg> postman) {
+        this(new ActorTimer("ActorScheduler" + (name.isEmpty() ? "" : ("-" + name)), tick, tickUnit), postman);
+    }
 
+    ScheduleActor(ActorTimer timer, Consumer<ActorMsg> postman) {
+        this(timer, null, postman);
+    }
 
+    /**
+     * @param random 决定定时任务首次执行时间的随机数，为null时使用ThreadLocalRandom
+     */
+    ScheduleActor(ActorTimer timer, Random random, Consumer<ActorMsg> postman) {
+        this.timer = timer;
+        this.random = random;
+        this.postman = postman;
     }
 
     @ActorListener
@@ -24,53 +50,128 @@ class ScheduleActor {
         if (stopped) {
             throw new IllegalStateException("ScheduleActor has been stopped");
         }
-        if (null == executorService) {
-            executorService = Executors.newScheduledThreadPool(1, new NamedThreadFactory("ActorScheduler-" + (name.isEmpty() ? "" : (name + "-"))));
-            ScheduledFuture<?> scheduledFuture = executorService.scheduleAtFixedRate(() -> runningTasks.entrySet().removeIf(entry -> entry.getValue().isDone()), 1000, 1000, TimeUnit.MILLISECONDS);
-            runningTasks.put("resolvedTask", scheduledFuture);
-        }
+        timer.start();
         long delay = task.getInterval();
-        ScheduledFuture<?> scheduledFuture = executorService.scheduleAtFixedRate(() -> actor.send(task.getAddr(), task.getTopic()), ThreadLocalRandom.current().nextLong(delay), delay, task.getTimeUnit());
-        runningTasks.put(task.getAddr() + "-" + task.getTopic(), scheduledFuture);
+        Consumer<TimerTask> action;
+        if (task.isCoalesce()) {
+            action = new CoalescingTick(task);
+        } else if (task.isWithMissedTicks()) {
+            action = t -> deliverOrRetry(t, createMsg(task.getAddr(), task.getTopic(), 0L));
+        } else {
+            action = t -> deliverOrRetry(t, createMsg(task.getAddr(), task.getTopic()));
+        }
+        TimerTask timerTask = timer.schedule(action, initialDelay(delay), delay, task.getTimeUnit());
+        replace(task.getAddr() + "-" + task.getTopic(), timerTask);
     }
 
+    // 随机的首次执行时间，避免同一周期的定时任务同时到期
+    private long initialDelay(long interval) {
+        return null == random ? ThreadLocalRandom.current().nextLong(interval) : (long) (random.nextDouble() * interval);
+    }
 
-    @ActorListener
-    void addDelayTask(DelayTask task) {
-        if (stopped) {
-            throw new IllegalStateException("ScheduleActor has been stopped");
+    /**
+     * 合并的定时消息：上一次的定时消息被处理之前，不再发送新的消息，只记录错过的次数。
+     * 时间轮线程发送消息，Actor线程处理完消息后清除标记。
+     */
+    private class CoalescingTick implements Consumer<TimerTask> {
+        private final ScheduleTask task;
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+        private final AtomicLong missedTicks = new AtomicLong(0L);
+
+        private CoalescingTick(ScheduleTask task) {
+            this.task = task;
         }
-        if (null == executorService) {
-            executorService = Executors.newScheduledThreadPool(1, new NamedThreadFactory("ActorScheduler-" + (name.isEmpty() ? "" : (name + "-"))));
+
+        @Override
+        public void accept(TimerTask timerTask) {
+            if (!pending.compareAndSet(false, true)) {
+                missedTicks.incrementAndGet();
+                return;
+            }
+            long missed = missedTicks.getAndSet(0L);
+            ActorMsg msg = task.isWithMissedTicks() ?
+                    createMsg(task.getAddr(), task.getTopic(), missed) : createMsg(task.getAddr(), task.getTopic());
+            msg.getContext().setConsumedListener(() -> pending.set(false));
+            if (!deliver(msg)) {
+                missedTicks.addAndGet(missed + 1);
+                pending.set(false);
+            }
         }
-        ScheduledFuture<?> scheduledFuture = executorService.schedule(() -> actor.send(task.getAddr(), task.getTopic()), task.getDelay(), task.getTimeUnit());
-        runningTasks.put(task.getAddr() + "-" + task.getTopic(), scheduledFuture);
+    }
+
 
+    // 同一个地址和主题只保留一个周期任务
+    private void replace(String key, TimerTask timerTask) {
+        TimerTask previous = runningTasks.put(key, timerTask);
+        if (null != previous && previous != timerTask) {
+            previous.cancel();
+        }
     }
 
     @ActorListener
     private void removeTask(String addr, String topic) {
-        ScheduledFuture<?> scheduledFuture = runningTasks.remove(addr + "-" + topic);
-        if (null != scheduledFuture) {
-            scheduledFuture.cancel(false);
+        TimerTask timerTask = runningTasks.remove(addr + "-" + topic);
+        if (null != timerTask) {
+            timerTask.cancel();
+        }
+    }
+
+    private ActorMsg createMsg(String addr, String topic, Object... payloads) {
+        return actor.getOutbox().createMsg(addr, topic, ActorMsg.Response.DEFAULT, ActorRejectPolicy.EXCEPTION, payloads);
+    }
+
+    // 在定时器线程中执行，收件箱满了时在下一个tick重试，直到放入收件箱或者周期任务被取消
+    private void deliverOrRetry(TimerTask periodic, ActorMsg msg) {
+        if (periodic.isCancelled() || stopped) {
+            return;
+        }
+        if (!deliver(msg)) {
+            timer.schedule(t -> deliverOrRetry(periodic, msg), timer.getTickNanos(), 0L, TimeUnit.NANOSECONDS);
         }
     }
 
+    private boolean deliver(ActorMsg msg) {
+        ActorJfrEvents.SchedulerFireEvent event = null;
+        if (ActorEvents.schedulerEnabled) {
+            event = new ActorJfrEvents.SchedulerFireEvent();
+            event.begin();
+        }
+        boolean delivered = false;
+        try {
+            postman.accept(msg);
+            delivered = true;
+        } catch (IllegalStateException e) {
+            logger.debug("Deliver scheduled message failed, retry later, cause: {}, msg: {}.", e.getMessage(), msg);
+        }
+        if (null != event) {
+            event.end();
+            event.actor = msg.getReceiver();
+            event.topic = msg.getTopic();
+            event.rejected = !delivered;
+            event.commit();
+        }
+        return delivered;
+    }
+
+    /**
+     * 正在运行的周期任务数量
+     */
+    int getTaskCount() {
+        return runningTasks.size();
+    }
+
     Actor getActor() {
         return actor;
     }
 
+    ActorTimer getTimer() {
+        return timer;
+    }
+
     void stop () throws InterruptedException {
         stopped = true;
-        runningTasks.values().forEach(f -> f.cancel(false));
+        runningTasks.values().forEach(TimerTask::cancel);
         runningTasks.clear();
-        if (null != executorService) {
-            executorService.shutdown();
-
-            if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-            }
-            executorService = null;
-        }
+        timer.stop();
     }
 }
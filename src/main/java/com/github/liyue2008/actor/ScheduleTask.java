@@ -10,18 +10,30 @@ class ScheduleTask {
     private final long interval;
     private final String addr;
     private final String topic;
+    // 上一次的定时消息还没有处理完时不再发送
+    private final boolean coalesce;
+    // 定时消息中携带错过的次数
+    private final boolean withMissedTicks;
 
     public ScheduleTask(String addr, String topic, ActorScheduler scheduler){
         this.timeUnit = scheduler.timeUnit();
         this.interval = scheduler.interval();
         this.addr = addr;
         this.topic = topic;
+        this.coalesce = scheduler.coalesce();
+        this.withMissedTicks = false;
     }
     public ScheduleTask(TimeUnit timeUnit, long interval, String addr, String topic) {
+        this(timeUnit, interval, addr, topic, false, false);
+    }
+
+    public ScheduleTask(TimeUnit timeUnit, long interval, String addr, String topic, boolean coalesce, boolean withMissedTicks) {
         this.timeUnit = timeUnit;
         this.interval = interval;
         this.addr = addr;
         this.topic = topic;
+        this.coalesce = coalesce;
+        this.withMissedTicks = withMissedTicks;
     }
 
     public TimeUnit getTimeUnit() {
@@ -40,17 +52,26 @@ class ScheduleTask {
         return topic;
     }
 
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public boolean isWithMissedTicks() {
+        return withMissedTicks;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ScheduleTask that = (ScheduleTask) o;
-        return interval == that.interval && timeUnit == that.timeUnit && Objects.equals(addr, that.addr) && Objects.equals(topic, that.topic);
+        return interval == that.interval && coalesce == that.coalesce && withMissedTicks == that.withMissedTicks
+                && timeUnit == that.timeUnit && Objects.equals(addr, that.addr) && Objects.equals(topic, that.topic);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(timeUnit, interval, addr, topic);
+        return Objects.hash(timeUnit, interval, addr, topic, coalesce, withMissedTicks);
     }
 
     @Override
@@ -60,6 +81,7 @@ class ScheduleTask {
                 ", interval=" + interval +
                 ", addr='" + addr + '\'' +
                 ", topic='" + topic + '\'' +
+                ", coalesce=" + coalesce +
                 '}';
     }
 }
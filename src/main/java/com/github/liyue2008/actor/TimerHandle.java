@@ -0,0 +1,78 @@
+package com.github.liyue2008.actor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Actor#runDelay}返回的延迟任务，可以在执行之前取消。
+ * 任务到期后在Actor的线程中执行。
+ */
+public final class TimerHandle {
+    private static final AtomicLong ID_GENERATOR = new AtomicLong(0L);
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXECUTED = 2;
+
+    private final long id;
+    private final Runnable runnable;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    // 时间轮中的任务，Actor加入ActorSystem之前为null
+    private volatile TimerTask timerTask;
+
+    TimerHandle(Runnable runnable) {
+        this.id = ID_GENERATOR.incrementAndGet();
+        this.runnable = runnable;
+    }
+
+    /**
+     * 任务ID，在进程内唯一
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 取消任务
+     * @return 任务还没有执行并且被取消返回true，已经执行或者已经取消返回false
+     */
+    public boolean cancel() {
+        if (state.compareAndSet(PENDING, CANCELLED)) {
+            TimerTask task = timerTask;
+            if (null != task) {
+                task.cancel();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    public boolean isDone() {
+        return state.get() != PENDING;
+    }
+
+    void setTimerTask(TimerTask timerTask) {
+        this.timerTask = timerTask;
+        // 设置之前已经取消了
+        if (isCancelled()) {
+            timerTask.cancel();
+        }
+    }
+
+    /**
+     * 在Actor线程中执行任务，已经取消的不执行
+     */
+    void run() {
+        if (state.compareAndSet(PENDING, EXECUTED)) {
+            runnable.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimerHandle{id=" + id + ", state=" + state.get() + '}';
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.liyue2008.actor;
+
+import java.util.function.Consumer;
+
+/**
+ * 时间轮中的一个定时任务。
+ * 除了cancel，所有方法和字段都只在持有{@link ActorTimer}的锁时访问。
+ */
+class TimerTask {
+    private final ActorTimer timer;
+    private final Consumer<TimerTask> action;
+    // 周期，单位纳秒，0表示只执行一次
+    private final long periodNanos;
+    // 到期时间，单位纳秒，和ActorTimer的时钟一致
+    long expiration;
+    private volatile boolean cancelled = false;
+
+    // 所在的槽，以及在槽的双向链表中的前后节点
+    TimingWheel.Bucket bucket;
+    TimerTask prev;
+    TimerTask next;
+
+    TimerTask(ActorTimer timer, Consumer<TimerTask> action, long expiration, long periodNanos) {
+        this.timer = timer;
+        this.action = action;
+        this.expiration = expiration;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * 取消任务，任务不会再执行，并从时间轮中删除
+     */
+    void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            if (null != timer) {
+                timer.remove(this);
+            }
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    boolean isPeriodic() {
+        return periodNanos > 0;
+    }
+
+    long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    void run() {
+        action.accept(this);
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.liyue2008.actor;
+
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮。
+ * 每一层有wheelSize个槽，每个槽的时间跨度是tick；超出本层时间范围的任务放入上一层，
+ * 上一层的tick是本层的整个时间范围。添加和删除任务都是O(1)的。
+ * <p>
+ * 有任务的槽放入一个按到期时间排序的队列，驱动时间轮的线程只在队列头部的槽到期时才需要醒来，
+ * 没有空转的tick。槽到期后，其中的任务重新添加到时间轮：到期的任务执行，其它任务降到下一层。
+ * 任务的到期时间向上取整到最底层的tick，任务最多晚一个tick执行，不会提前执行。
+ * 不是线程安全的，由{@link ActorTimer}加锁访问。
+ */
+class TimingWheel {
+    private final long tickNanos;
+    // 最底层时间轮的tick
+    private final long baseTickNanos;
+    private final int wheelSize;
+    private final long intervalNanos;
+    private final Bucket[] buckets;
+    private final Queue<Bucket> bucketQueue;
+    private long currentTime;
+    // 上一层时间轮，需要时才创建
+    private TimingWheel overflowWheel = null;
+
+    TimingWheel(long tickNanos, int wheelSize, long startNanos, Queue<Bucket> bucketQueue) {
+        this(tickNanos, tickNanos, wheelSize, startNanos, bucketQueue);
+    }
+
+    private TimingWheel(long tickNanos, long baseTickNanos, int wheelSize, long startNanos, Queue<Bucket> bucketQueue) {
+        this.tickNanos = tickNanos;
+        this.baseTickNanos = baseTickNanos;
+        this.wheelSize = wheelSize;
+        this.intervalNanos = tickNanos * wheelSize;
+        this.bucketQueue = bucketQueue;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.currentTime = Math.floorDiv(startNanos, tickNanos) * tickNanos;
+    }
+
+    /**
+     * 添加任务
+     * @return 任务已经到期或者已经取消时返回false，不添加
+     */
+    boolean add(TimerTask task) {
+        if (task.isCancelled()) {
+            return false;
+        }
+        long expiration = -Math.floorDiv(-task.expiration, baseTickNanos) * baseTickNanos;
+        if (expiration < currentTime + tickNanos) {
+            return false;
+        }
+        if (expiration < currentTime + intervalNanos) {
+            long virtualId = Math.floorDiv(expiration, tickNanos);
+            Bucket bucket = buckets[(int) Math.floorMod(virtualId, (long) wheelSize)];
+            bucket.add(task);
+            if (bucket.setExpiration(virtualId * tickNanos)) {
+                bucketQueue.offer(bucket);
+            }
+            return true;
+        }
+        if (null == overflowWheel) {
+            overflowWheel = new TimingWheel(intervalNanos, baseTickNanos, wheelSize, currentTime, bucketQueue);
+        }
+        return overflowWheel.add(task);
+    }
+
+    /**
+     * 推进时钟，每次推进到一个到期的槽的时间
+     */
+    void advanceClock(long timeNanos) {
+        if (timeNanos >= currentTime + tickNanos) {
+            currentTime = Math.floorDiv(timeNanos, tickNanos) * tickNanos;
+            if (null != overflowWheel) {
+                overflowWheel.advanceClock(currentTime);
+            }
+        }
+    }
+
+    /**
+     * 时间轮的一个槽，双向链表
+     */
+    static class Bucket {
+        private final TimerTask root = new TimerTask(null, null, 0L, 0L);
+        // 槽的到期时间，不在队列中时为-1
+        private long expiration = -1L;
+
+        Bucket() {
+            root.prev = root;
+            root.next = root;
+        }
+
+        long getExpiration() {
+            return expiration;
+        }
+
+        private boolean setExpiration(long expiration) {
+            if (this.expiration != expiration) {
+                this.expiration = expiration;
+                return true;
+            }
+            return false;
+        }
+
+        private void add(TimerTask task) {
+            task.bucket = this;
+            task.prev = root.prev;
+            task.next = root;
+            root.prev.next = task;
+            root.prev = task;
+        }
+
+        void remove(TimerTask task) {
+            if (task.bucket == this) {
+                task.prev.next = task.next;
+                task.next.prev = task.prev;
+                task.bucket = null;
+                task.prev = null;
+                task.next = null;
+            }
+        }
+
+        /**
+         * 删除槽中的所有任务，并逐个交给consumer
+         */
+        void flush(Consumer<TimerTask> consumer) {
+            TimerTask task = root.next;
+            root.next = root;
+            root.prev = root;
+            expiration = -1L;
+            while (task != root) {
+                TimerTask next = task.next;
+                task.bucket = null;
+                task.prev = null;
+                task.next = null;
+                consumer.accept(task);
+                task = next;
+            }
+        }
+    }
+}
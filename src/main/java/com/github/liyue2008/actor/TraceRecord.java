@@ -0,0 +1,74 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 一条跟踪记录：被采样的消息在某个阶段的时间戳
+ */
+public final class TraceRecord {
+    private final long traceId;
+    private final TraceStage stage;
+    private final String sender;
+    private final String receiver;
+    private final String topic;
+    private final String threadName;
+    private final long nanoTime;
+
+    TraceRecord(long traceId, TraceStage stage, String sender, String receiver, String topic, String threadName, long nanoTime) {
+        this.traceId = traceId;
+        this.stage = stage;
+        this.sender = sender;
+        this.receiver = receiver;
+        this.topic = topic;
+        this.threadName = threadName;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * 同一个消息的所有记录traceId相同，请求的响应和请求的traceId也相同
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    public TraceStage getStage() {
+        return stage;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * 记录这个阶段的线程
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * System.nanoTime()的时间戳
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceRecord{" +
+                "traceId=" + traceId +
+                ", stage=" + stage +
+                ", sender='" + sender + '\'' +
+                ", receiver='" + receiver + '\'' +
+                ", topic='" + topic + '\'' +
+                ", threadName='" + threadName + '\'' +
+                ", nanoTime=" + nanoTime +
+                '}';
+    }
+}
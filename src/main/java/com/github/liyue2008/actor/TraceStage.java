@@ -0,0 +1,13 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 消息生命周期中被跟踪的阶段
+ */
+public enum TraceStage {
+    CREATED, // 发送者创建消息
+    OUTBOX_ENQUEUE, // 放入发送者的发件箱
+    OUTBOX_DEQUEUE, // 从发件箱中取出，投递给收件人
+    INBOX_ENQUEUE, // 放入收件人的收件箱
+    INBOX_DEQUEUE, // 从收件箱中取出，开始处理
+    CONSUMED // 处理完成
+}
@@ -0,0 +1,64 @@
+package com.github.liyue2008.actor;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * ActorThread等待新消息时的上下文，每个ActorThread一个。
+ */
+public final class WaitContext {
+    private final Thread thread;
+    private final BooleanSupplier hasMessage;
+    // 线程是否正在（或者即将）挂起，发送者只在线程挂起时唤醒它
+    private volatile boolean waiting = false;
+    // 连续空闲的轮数，处理了消息之后清零
+    private int idleCount = 0;
+
+    WaitContext(Thread thread, BooleanSupplier hasMessage) {
+        this.thread = thread;
+        this.hasMessage = hasMessage;
+    }
+
+    /**
+     * 获取等待的线程
+     * @return 等待的线程
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * 获取连续空闲的轮数，第一次等待时为1
+     * @return 连续空闲的轮数
+     */
+    public int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * 检查线程是否有需要处理的消息，挂起线程之前需要再次检查
+     * @return 有需要处理的消息返回true
+     */
+    public boolean hasMessage() {
+        return hasMessage.getAsBoolean();
+    }
+
+    public boolean isWaiting() {
+        return waiting;
+    }
+
+    /**
+     * 标记线程是否正在等待，挂起之前设置为true，唤醒之后设置为false
+     * @param waiting 是否正在等待
+     */
+    public void setWaiting(boolean waiting) {
+        this.waiting = waiting;
+    }
+
+    void onIdle() {
+        idleCount++;
+    }
+
+    void onBusy() {
+        idleCount = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.liyue2008.actor;
+
+/**
+ * ActorThread没有消息可以处理时的等待策略。
+ * 内置的策略有：
+ * BusySpinWaitStrategy：一直自旋，延迟最低，始终占用一个CPU核；
+ * YieldingWaitStrategy：自旋一定次数后让出CPU；
+ * ParkingWaitStrategy：自旋、让出CPU之后，通过LockSupport挂起线程；
+ * BlockingWaitStrategy：通过锁和条件等待挂起线程，CPU占用最低，也是默认的策略。
+ *
+ * 实现挂起线程的策略时，需要先调用{@link WaitContext#setWaiting(boolean)}标记线程正在等待，
+ * 然后再次调用{@link WaitContext#hasMessage()}确认没有新消息之后再挂起，否则可能错过唤醒信号。
+ * 发送者只有在线程正在等待时才会调用{@link #signal(WaitContext)}。
+ */
+public interface WaitStrategy {
+    /**
+     * ActorThread一轮没有处理任何消息时调用，实现可以自旋、让出CPU或者挂起线程。
+     * 方法返回后ActorThread将开始新的一轮消息处理。
+     * @param context 等待线程的上下文
+     * @throws InterruptedException 等待时线程被中断
+     */
+    void waitFor(WaitContext context) throws InterruptedException;
+
+    /**
+     * 唤醒正在等待的ActorThread
+     * @param context 等待线程的上下文
+     */
+    void signal(WaitContext context);
+}
@@ -0,0 +1,32 @@
+package com.github.liyue2008.actor;
+
+/**
+ * 自旋一定次数之后，调用Thread.yield()让出CPU的等待策略。
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int DEFAULT_SPIN_TRIES = 100;
+    private final int spinTries;
+
+    public YieldingWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    /**
+     * @param spinTries 开始让出CPU之前自旋的次数
+     */
+    public YieldingWaitStrategy(int spinTries) {
+        this.spinTries = spinTries;
+    }
+
+    @Override
+    public void waitFor(WaitContext context) {
+        if (context.getIdleCount() > spinTries) {
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public void signal(WaitContext context) {
+        // 线程从不挂起，不需要唤醒
+    }
+}
@@ -18,4 +18,11 @@ public @interface ActorScheduler {
 
     long interval() default 1000L;
 
+    /**
+     * 是否合并定时消息。为true时，如果上一次的定时消息还没有被处理，不再发送新的定时消息，
+     * 等上一次的消息处理完之后再发送，避免Actor繁忙时定时消息越积越多。
+     * 方法可以声明一个long类型的参数，接收期间错过的次数。
+     */
+    boolean coalesce() default false;
+
 }
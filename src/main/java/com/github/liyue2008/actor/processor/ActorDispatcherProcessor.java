@@ -0,0 +1,255 @@
+package com.github.liyue2008.actor.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * 为带有{@link com.github.liyue2008.actor.annotation.ActorListener}、
+ * {@link com.github.liyue2008.actor.annotation.ActorSubscriber}、
+ * {@link com.github.liyue2008.actor.annotation.ActorScheduler}和
+ * {@link com.github.liyue2008.actor.annotation.ActorResponseListener}注解的类生成分发器。
+ * <p>
+ * 分发器名为<code>类名$$ActorDispatcher</code>，和类在同一个包中，包含类中声明的所有方法的描述，
+ * 以及一个按方法序号switch直接调用方法的dispatch方法。私有方法只生成描述，运行时通过反射调用。
+ * 私有的类、局部类和匿名类无法从外部访问，不生成分发器，运行时仍然使用反射。
+ */
+public class ActorDispatcherProcessor extends AbstractProcessor {
+    private static final String ANNOTATION_PACKAGE = "com.github.liyue2008.actor.annotation.";
+    // 和ActorUtils.methodToTopic的优先级一致
+    private static final List<String> ANNOTATIONS = Arrays.asList(
+            ANNOTATION_PACKAGE + "ActorListener",
+            ANNOTATION_PACKAGE + "ActorScheduler",
+            ANNOTATION_PACKAGE + "ActorSubscriber",
+            ANNOTATION_PACKAGE + "ActorResponseListener");
+    private static final String ACTOR_MESSAGE = ANNOTATION_PACKAGE + "ActorMessage";
+    private static final String RESPONSE_MANUALLY = ANNOTATION_PACKAGE + "ResponseManually";
+    private static final String ACTOR_SCHEDULER = ANNOTATION_PACKAGE + "ActorScheduler";
+    private static final String SUFFIX = "$$ActorDispatcher";
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(ANNOTATIONS);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                Element enclosing = element.getEnclosingElement();
+                if (element.getKind() == ElementKind.METHOD && enclosing.getKind() == ElementKind.CLASS) {
+                    types.add((TypeElement) enclosing);
+                }
+            }
+        }
+        for (TypeElement type : types) {
+            if (isAccessible(type) && generated.add(type.getQualifiedName().toString())) {
+                try {
+                    generate(type);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Can not generate dispatcher: " + e, type);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分发器和类在同一个包中，类及其外部类都不能是私有的，也不能是局部类或者匿名类
+     */
+    private static boolean isAccessible(TypeElement type) {
+        Element element = type;
+        while (element.getKind().isClass() || element.getKind().isInterface()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            NestingKind nesting = ((TypeElement) element).getNestingKind();
+            if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return element.getKind() == ElementKind.PACKAGE;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String typeName = erasure(type.asType());
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+                methods.add(method);
+            }
+        }
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type);
+        try (Writer writer = file.openWriter(); PrintWriter out = new PrintWriter(writer)) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("// Generated by " + getClass().getName() + ", do not edit.");
+            out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+            out.println("public final class " + simpleName + " implements com.github.liyue2008.actor.ActorDispatcher {");
+            out.println("    private static final com.github.liyue2008.actor.DispatchMethod[] METHODS = {");
+            for (int i = 0; i < methods.size(); i++) {
+                out.println("            " + describe(i, methods.get(i)) + (i < methods.size() - 1 ? "," : ""));
+            }
+            out.println("    };");
+            out.println();
+            out.println("    @Override");
+            out.println("    public com.github.liyue2008.actor.DispatchMethod[] methods() {");
+            out.println("        return METHODS.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object dispatch(Object instance, int index, Object[] args) throws Throwable {");
+            out.println("        switch (index) {");
+            for (int i = 0; i < methods.size(); i++) {
+                ExecutableElement method = methods.get(i);
+                if (method.getModifiers().contains(Modifier.PRIVATE)) {
+                    continue;
+                }
+                String call = (method.getModifiers().contains(Modifier.STATIC) ? typeName : "((" + typeName + ") instance)")
+                        + "." + method.getSimpleName() + "(" + arguments(method) + ")";
+                out.println("            case " + i + ":");
+                if (method.getReturnType().getKind() == TypeKind.VOID) {
+                    out.println("                " + call + ";");
+                    out.println("                return null;");
+                } else {
+                    out.println("                return " + call + ";");
+                }
+            }
+            out.println("            default:");
+            out.println("                throw new IllegalArgumentException(\"No dispatchable method: \" + index);");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private String describe(int index, ExecutableElement method) {
+        StringBuilder sb = new StringBuilder("com.github.liyue2008.actor.DispatchMethod.builder(")
+                .append(index).append(", \"").append(method.getSimpleName()).append("\")");
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (!parameters.isEmpty()) {
+            sb.append(".parameterTypes(");
+            for (int i = 0; i < parameters.size(); i++) {
+                sb.append(i > 0 ? ", " : "").append(erasure(parameters.get(i).asType())).append(".class");
+            }
+            sb.append(")");
+        }
+        if (method.getReturnType().getKind() == TypeKind.VOID) {
+            sb.append(".returnsVoid()");
+        }
+        for (String annotation : ANNOTATIONS) {
+            AnnotationMirror mirror = findAnnotation(method, annotation);
+            if (null != mirror) {
+                sb.append(".annotation(").append(annotation).append(".class, ")
+                        .append(processingEnv.getElementUtils().getConstantExpression(value(mirror, "topic", ""))).append(")");
+                if (annotation.equals(ACTOR_SCHEDULER)) {
+                    sb.append(".schedule(java.util.concurrent.TimeUnit.").append(value(mirror, "timeUnit", "MILLISECONDS"))
+                            .append(", ").append(value(mirror, "interval", 1000L)).append("L)");
+                    if (Boolean.TRUE.equals(value(mirror, "coalesce", false))) {
+                        sb.append(".coalesce()");
+                    }
+                }
+                break;
+            }
+        }
+        if (parameters.size() == 1 && null != findAnnotation(parameters.get(0), ACTOR_MESSAGE)) {
+            sb.append(".actorMessage()");
+        }
+        if (null != findAnnotation(method, RESPONSE_MANUALLY)) {
+            sb.append(".responseManually()");
+        }
+        if (method.getModifiers().contains(Modifier.PRIVATE)) {
+            sb.append(".notDispatchable()");
+        }
+        return sb.append(".build()").toString();
+    }
+
+    /**
+     * 生成调用参数，基本类型的参数拆箱并拓宽，和MethodHandle的转换规则一致：
+     * Character可以拓宽为int、long、float和double，其它数值类型通过Number拓宽
+     */
+    private String arguments(ExecutableElement method) {
+        StringBuilder sb = new StringBuilder();
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            TypeMirror type = parameters.get(i).asType();
+            String arg = "args[" + i + "]";
+            switch (type.getKind()) {
+                case BOOLEAN:
+                    sb.append("(Boolean) ").append(arg);
+                    break;
+                case CHAR:
+                    sb.append("(Character) ").append(arg);
+                    break;
+                case BYTE:
+                case SHORT:
+                    sb.append("((Number) ").append(arg).append(").").append(type.getKind().name().toLowerCase(Locale.ROOT)).append("Value()");
+                    break;
+                case INT:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                    String primitive = type.getKind().name().toLowerCase(Locale.ROOT);
+                    sb.append("(").append(arg).append(" instanceof Character ? (").append(primitive).append(") (Character) ").append(arg)
+                            .append(" : ((Number) ").append(arg).append(").").append(primitive).append("Value())");
+                    break;
+                default:
+                    sb.append("(").append(erasure(type)).append(") ").append(arg);
+            }
+        }
+        return sb.toString();
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object value(AnnotationMirror mirror, String name, Object defaultValue) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                Object value = entry.getValue().getValue();
+                return value instanceof VariableElement ? ((VariableElement) value).getSimpleName().toString() : value;
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -5,14 +5,39 @@ import org.slf4j.LoggerFactory;
 
 import com.github.liyue2008.actor.annotation.*;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Disabled;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SuppressWarnings("ALL")
@@ -449,6 +474,67 @@ private static final Logger logger = LoggerFactory.getLogger(ActorTest.class);
         assertEquals(1, counter.get());
     }
 
+    @Test
+    public void testRunDelayHandles() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        Actor actor = Actor.builder().addr("actor").build();
+        // 加入ActorSystem之前添加的任务
+        TimerHandle early = actor.runDelay(10, TimeUnit.MILLISECONDS, counter::incrementAndGet);
+        ActorSystem.builder()
+                .addActor(actor)
+                .build();
+        // 同一个lambda的多个任务互不影响
+        List<TimerHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            handles.add(actor.runDelay(200 + i % 50, TimeUnit.MILLISECONDS, counter::incrementAndGet));
+        }
+        assertEquals(10000, handles.stream().mapToLong(TimerHandle::getId).distinct().count());
+        for (int i = 0; i < handles.size(); i += 2) {
+            assertTrue(handles.get(i).cancel());
+        }
+        Thread.sleep(800);
+        assertTrue(early.isDone());
+        assertFalse(handles.get(0).cancel());
+        assertEquals(5001, counter.get());
+    }
+
+    @Test
+    public void testRunDelayInboxFull() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Actor actor = Actor.builder().addr("actor").inboxCapacity(1).addActorListener("block", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(actor)
+                .build();
+        sender.send("actor", "block");
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        // Actor线程被阻塞，到期的任务放不进收件箱，重试直到放入
+        List<TimerHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            handles.add(actor.runDelay(10, TimeUnit.MILLISECONDS, counter::incrementAndGet));
+        }
+        Thread.sleep(100);
+        assertEquals(0, counter.get());
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (counter.get() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, counter.get());
+        assertTrue(handles.stream().allMatch(TimerHandle::isDone));
+        actorSystem.stop();
+    }
+
     @Disabled
     @Test
     public void testAddActorScheduler() throws InterruptedException {
@@ -897,6 +983,774 @@ private static final Logger logger = LoggerFactory.getLogger(ActorTest.class);
 
     }
 
+    @Test
+    public void testReadyQueueDispatchMode() throws InterruptedException, ExecutionException {
+        final int count = 1000;
+        final CountDownLatch latch = new CountDownLatch(count);
+        Actor receiver = Actor.builder().addr("receiver")
+                .addActorListener("test", latch::countDown)
+                .addActorListener("hello", name -> "Hello, " + name)
+                .build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem.builder()
+                .threadCount(2)
+                .dispatchMode(ActorDispatchMode.READY_QUEUE)
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        for (int i = 0; i < count; i++) {
+            sender.send("receiver", "test");
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals("Hello, world!", sender.<String>sendThen("receiver", "hello", "world!").get());
+    }
+
+    @Test
+    public void testWorkStealingDispatchMode() throws InterruptedException {
+        final int actorCount = 8;
+        final int count = 1000;
+        final CountDownLatch latch = new CountDownLatch(actorCount * count);
+        final AtomicInteger concurrentInvocations = new AtomicInteger();
+        ActorSystem.Builder builder = ActorSystem.builder()
+                .threadCount(4)
+                .dispatchMode(ActorDispatchMode.WORK_STEALING);
+        for (int i = 0; i < actorCount; i++) {
+            final AtomicBoolean running = new AtomicBoolean(false);
+            builder.addActor(Actor.builder().addr("receiver" + i)
+                    .addActorListener("test", () -> {
+                        // 同一个Actor的消息处理不能并发执行
+                        if (!running.compareAndSet(false, true)) {
+                            concurrentInvocations.incrementAndGet();
+                        }
+                        running.set(false);
+                        latch.countDown();
+                    })
+                    .build());
+        }
+        Actor sender = Actor.builder().addr("sender").build();
+        builder.addActor(sender).build();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < actorCount; j++) {
+                sender.send("receiver" + j, "test");
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, concurrentInvocations.get());
+    }
+
+    @Test
+    public void testWaitStrategies() throws InterruptedException, ExecutionException {
+        WaitStrategy[] waitStrategies = new WaitStrategy[]{
+                new BusySpinWaitStrategy(),
+                new YieldingWaitStrategy(),
+                new ParkingWaitStrategy(),
+                new BlockingWaitStrategy()
+        };
+        for (WaitStrategy waitStrategy : waitStrategies) {
+            Actor receiver = Actor.builder().addr("receiver")
+                    .addActorListener("hello", name -> "Hello, " + name)
+                    .build();
+            Actor sender = Actor.builder().addr("sender").build();
+            ActorSystem actorSystem = ActorSystem.builder()
+                    .waitStrategy(waitStrategy)
+                    .addActor(sender)
+                    .addActor(receiver)
+                    .build();
+            for (int i = 0; i < 100; i++) {
+                assertEquals("Hello, " + i, sender.<String>sendThen("receiver", "hello", String.valueOf(i)).get());
+            }
+            actorSystem.stop();
+        }
+    }
+
+    @Test
+    public void testMpscArrayInboxQueue() throws InterruptedException {
+        final int senderCount = 4;
+        final int count = 10000;
+        final CountDownLatch latch = new CountDownLatch(senderCount * count);
+        Actor receiver = Actor.builder().addr("receiver")
+                .inboxQueueType(ActorQueueType.MPSC_ARRAY)
+                .inboxCapacity(1024)
+                .addActorListener("test", latch::countDown)
+                .build();
+        ActorSystem.Builder builder = ActorSystem.builder().threadCount(4).addActor(receiver);
+        Actor[] senders = new Actor[senderCount];
+        for (int i = 0; i < senderCount; i++) {
+            senders[i] = Actor.builder().addr("sender" + i).build();
+            builder.addActor(senders[i]);
+        }
+        builder.build();
+        for (Actor sender : senders) {
+            new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    sender.send("receiver", "test", ActorMsg.Response.IGNORE, ActorRejectPolicy.BLOCK);
+                }
+            }).start();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDirectDelivery() throws InterruptedException, ExecutionException {
+        final int count = 10000;
+        final CountDownLatch latch = new CountDownLatch(count);
+        Actor receiver = Actor.builder().addr("receiver")
+                .inboxCapacity(16)
+                .addActorListener("test", latch::countDown)
+                .addActorListener("hello", name -> "Hello, " + name)
+                .build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem.builder()
+                .directDelivery(true)
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        // 收件箱满时消息放入发件箱稍后重试，不会丢失
+        for (int i = 0; i < count; i++) {
+            sender.send("receiver", "test");
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals("Hello, world!", sender.<String>sendThen("receiver", "hello", "world!").get());
+    }
+
+    @Test
+    public void testThroughput() throws InterruptedException {
+        final int count = 10000;
+        final CountDownLatch latch = new CountDownLatch(count * 2);
+        Actor receiver = Actor.builder().addr("receiver")
+                .throughput(64)
+                .timeSlice(1, TimeUnit.MILLISECONDS)
+                .addActorListener("topic1", latch::countDown)
+                .addActorListener("topic2", latch::countDown)
+                .build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem.builder()
+                .throughput(32)
+                .dispatchMode(ActorDispatchMode.READY_QUEUE)
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        for (int i = 0; i < count; i++) {
+            sender.send("receiver", "topic1");
+            sender.send("receiver", "topic2");
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testThroughputFairness() {
+        final int topics = 8;
+        int[] handled = new int[topics];
+        Actor.Builder builder = Actor.builder().addr("receiver").throughput(2);
+        for (int t = 0; t < topics; t++) {
+            final int topic = t;
+            builder.addActorListener("topic" + t, () -> handled[topic]++);
+        }
+        Actor receiver = builder.build();
+        Actor sender = Actor.builder().addr("sender").throughput(2).build();
+        for (int i = 0; i < 10; i++) {
+            for (int t = 0; t < topics; t++) {
+                sender.send("receiver", "topic" + t);
+            }
+        }
+        // 队列数量多于throughput时，每个队列都能轮到
+        for (int i = 0; i < topics / 2; i++) {
+            assertTrue(sender.getOutbox().consumeMsgs(receiver.getInbox()::receive));
+        }
+        for (int t = 0; t < topics; t++) {
+            assertEquals(1, receiver.getInboxQueueSize("topic" + t));
+        }
+        for (int i = 0; i < topics / 2; i++) {
+            assertTrue(receiver.getInbox().processMsgs(null));
+        }
+        for (int t = 0; t < topics; t++) {
+            assertEquals(1, handled[t]);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class PrimitiveArgsHandler {
+        private long add(long a, int b) {
+            return a + b;
+        }
+    }
+
+    @Test
+    public void testPrimitiveArgsConversion() throws InterruptedException, ExecutionException {
+        Actor receiver = Actor.builder().addr("receiver").setHandlerInstance(new PrimitiveArgsHandler()).build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        // int 自动拓宽为 long
+        assertEquals(3L, sender.<Long>sendThen("receiver", "add", 1, 2).get());
+        // null 不能转换为基本类型
+        ExecutionException e = assertThrows(ExecutionException.class, () -> sender.<Long>sendThen("receiver", "add", (Object) null, 2).get());
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+
+    private static class OverloadHandler {
+        private String echo(String s) {
+            return "String";
+        }
+        private String echo(Integer i) {
+            return "Integer";
+        }
+    }
+
+    @Test
+    public void testCachedHandlerResolution() throws InterruptedException, ExecutionException {
+        Actor receiver = Actor.builder().addr("receiver").setHandlerInstance(new OverloadHandler()).build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        // 同一个主题不同类型的消息交替发送，每次都要选中正确的方法
+        for (int i = 0; i < 3; i++) {
+            assertEquals("String", sender.<String>sendThen("receiver", "echo", "a").get());
+            assertEquals("Integer", sender.<String>sendThen("receiver", "echo", 1).get());
+        }
+    }
+
+    // 不是私有的类，编译时会生成分发器
+    static class GeneratedDispatchHandler {
+        @ActorListener(topic = "sum")
+        long add(long a, int b) {
+            return a + b;
+        }
+
+        @ActorListener
+        String topicOf(@ActorMessage ActorMsg msg) {
+            return msg.getTopic();
+        }
+
+        // char拓宽为int和double
+        @ActorListener
+        int widen(int v) {
+            return v;
+        }
+
+        @ActorListener
+        double widenDouble(double v) {
+            return v;
+        }
+
+        // 私有方法通过反射调用
+        @ActorListener
+        private String hidden(String s) {
+            return s + "!";
+        }
+    }
+
+    @Test
+    public void testGeneratedDispatcher() throws InterruptedException, ExecutionException {
+        assertNotNull(ActorDispatchers.get(GeneratedDispatchHandler.class));
+        Actor receiver = Actor.builder().addr("receiver").setHandlerInstance(new GeneratedDispatchHandler()).build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        assertEquals(3L, sender.<Long>sendThen("receiver", "sum", 1, 2).get());
+        assertEquals("topicOf", sender.<String>sendThen("receiver", "topicOf").get());
+        assertEquals("a!", sender.<String>sendThen("receiver", "hidden", "a").get());
+        assertEquals(65, sender.<Integer>sendThen("receiver", "widen", 'A').get());
+        assertEquals(65.0, sender.<Double>sendThen("receiver", "widenDouble", 'A').get());
+        assertEquals(2.0, sender.<Double>sendThen("receiver", "widenDouble", 2L).get());
+    }
+
+    private static class SilentHandler {
+        // 收到请求后不响应
+        @ResponseManually
+        private void silent() {}
+
+        private String echo(String s) {
+            return s;
+        }
+    }
+
+    @Test
+    public void testSendThenTimeout() throws InterruptedException, ExecutionException {
+        Actor receiver = Actor.builder().addr("receiver").setHandlerInstance(new SilentHandler()).build();
+        Actor sender = Actor.builder().addr("sender").build();
+        // 加入ActorSystem之前发送的请求，从加入时开始计时
+        CompletableFuture<Void> early = sender.sendThenWithTimeout("receiver", "silent", 100, TimeUnit.MILLISECONDS);
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        ExecutionException e = assertThrows(ExecutionException.class, early::get);
+        assertTrue(e.getCause() instanceof TimeoutException);
+        e = assertThrows(ExecutionException.class,
+                () -> sender.sendThenWithTimeout("receiver", "silent", 100, TimeUnit.MILLISECONDS).get());
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertEquals("hello", sender.<String>sendThenWithTimeout("receiver", "echo", 1, TimeUnit.SECONDS, "hello").get());
+        CompletableFuture<Void> future = sender.sendThenWithTimeout("receiver", "silent", 1, TimeUnit.SECONDS);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        actorSystem.stop();
+    }
+
+    @Test
+    public void testLongObjectHashMap() {
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // 键的范围较小，放入和删除交替进行，覆盖扩容和删除后移
+            long key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testCompactResponse() throws InterruptedException {
+        AtomicReference<ActorMsg> responseRef = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        Actor receiver = Actor.builder().addr("receiver").addActorListener("echo", (String s) -> s).build();
+        Actor sender = Actor.builder().addr("sender")
+                .addResponseHandlerFunction("echo", response -> {
+                    responseRef.set(response);
+                    latch.countDown();
+                })
+                .build();
+        ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        ActorMsg request = sender.send("receiver", "echo", ActorMsg.Response.REQUIRED, "hello");
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        ActorMsg response = responseRef.get();
+        // 响应只携带请求的ID和主题，不再引用请求
+        assertEquals(request.getSequentialId(), response.getCorrelationId());
+        assertEquals("echo", response.getRequestTopic());
+        assertEquals("hello", response.getResult());
+        assertEquals(2, response.getPayloads().length);
+    }
+
+    @Test
+    public void testTimingWheel() {
+        AtomicLong clock = new AtomicLong(0L);
+        long tick = TimeUnit.MILLISECONDS.toNanos(1);
+        ActorTimer timer = new ActorTimer("test", 1, TimeUnit.MILLISECONDS, 8, clock::get);
+        Random random = new Random(42);
+        AtomicInteger fired = new AtomicInteger();
+        AtomicInteger periodicFired = new AtomicInteger();
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            // 延迟跨越多层时间轮
+            long expiration = random.nextInt(100000) * tick / 10;
+            timer.schedule(t -> {
+                assertTrue(clock.get() >= expiration && clock.get() < expiration + tick);
+                fired.incrementAndGet();
+            }, expiration, 0L, TimeUnit.NANOSECONDS);
+        }
+        TimerTask cancelled = timer.schedule(t -> fail(), 5, 0L, TimeUnit.MILLISECONDS);
+        cancelled.cancel();
+        TimerTask periodic = timer.schedule(t -> periodicFired.incrementAndGet(), 100, 100, TimeUnit.MILLISECONDS);
+        // 时间直接跳到下一个到期的槽
+        while (clock.get() < TimeUnit.SECONDS.toNanos(10)) {
+            clock.set(timer.nextExpiration());
+            timer.expire(clock.get());
+        }
+        periodic.cancel();
+        assertEquals(count, fired.get());
+        assertEquals(100, periodicFired.get());
+    }
+
+    @Test
+    public void testSchedulerRetryWhenInboxFull() {
+        AtomicLong clock = new AtomicLong(0L);
+        ActorTimer timer = ActorTimer.manual("test", 1, TimeUnit.MILLISECONDS, clock::get);
+        AtomicInteger attempts = new AtomicInteger();
+        List<ActorMsg> delivered = new ArrayList<>();
+        ScheduleActor scheduleActor = new ScheduleActor(timer, msg -> {
+            // 前3次投递时收件箱是满的
+            if (attempts.incrementAndGet() <= 3) {
+                throw new IllegalStateException("Inbox full");
+            }
+            delivered.add(msg);
+        });
+        scheduleActor.addTask(new ScheduleTask(TimeUnit.MILLISECONDS, 10, "actor", "tick"));
+        while (timer.nextExpiration() < TimeUnit.MILLISECONDS.toNanos(100)) {
+            clock.set(timer.nextExpiration());
+            timer.expire(clock.get());
+        }
+        // 首次执行时间在10毫秒以内，100毫秒内执行10次，投递失败的在下一个tick重试，没有丢失
+        assertEquals(10, delivered.size());
+    }
+
+    @Test
+    public void testCoalescingScheduler() throws InterruptedException {
+        AtomicInteger ticks = new AtomicInteger(0);
+        AtomicInteger missed = new AtomicInteger(0);
+        Actor actor = Actor.builder().addr("actor")
+                .addScheduler(1, TimeUnit.MILLISECONDS, true, (long missedTicks) -> {
+                    ticks.incrementAndGet();
+                    missed.addAndGet((int) missedTicks);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(actor)
+                .build();
+        Thread.sleep(300);
+        actorSystem.stop();
+        // 处理慢于定时器时，错过的定时消息被合并，不会在收件箱中堆积
+        assertTrue(ticks.get() > 0 && ticks.get() <= 20, "ticks: " + ticks.get());
+        assertTrue(missed.get() > ticks.get(), "missed: " + missed.get());
+    }
+
+    @Test
+    public void testVirtualTimeActorSystem() throws InterruptedException, ExecutionException {
+        List<String> first = runVirtualTimeSystem(42L);
+        List<String> second = runVirtualTimeSystem(42L);
+        // 相同的种子，处理顺序完全相同
+        assertEquals(first, second);
+        assertTrue(first.size() > 7200, "size: " + first.size());
+    }
+
+    @Test
+    public void testVirtualTimeIdleStep() {
+        AtomicInteger counter = new AtomicInteger();
+        Actor actor = Actor.builder().addr("actor").addActorListener("ping", counter::incrementAndGet).build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .virtualTime(1L)
+                .addActor(actor)
+                .build();
+        actor.send("actor", "ping");
+        int steps = 0;
+        while (actorSystem.step()) {
+            assertTrue(++steps < 100);
+        }
+        assertEquals(1, counter.get());
+        // 没有消息也没有定时任务，不推进虚拟时钟
+        assertFalse(actorSystem.step());
+        assertEquals(0L, actorSystem.now(TimeUnit.NANOSECONDS));
+        actorSystem.runFor(1, TimeUnit.SECONDS);
+        assertEquals(1000L, actorSystem.now(TimeUnit.MILLISECONDS));
+        actorSystem.stop();
+    }
+
+    // 模拟一小时：两个Actor每秒一次的定时任务互相发请求，以及一个超时的请求
+    private List<String> runVirtualTimeSystem(long seed) throws InterruptedException, ExecutionException {
+        List<String> trace = new ArrayList<>();
+        Actor a = Actor.builder().addr("a").addActorListener("ping", (Consumer<Long>) t -> trace.add("a-ping-" + t)).build();
+        Actor b = Actor.builder().addr("b").addActorListener("ping", (Consumer<Long>) t -> trace.add("b-ping-" + t)).build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .virtualTime(seed)
+                .addActor(a)
+                .addActor(b)
+                .build();
+        a.addActorScheduler(1, TimeUnit.SECONDS, () -> a.send("b", "ping", actorSystem.now(TimeUnit.MILLISECONDS)));
+        b.addActorScheduler(1, TimeUnit.SECONDS, () -> b.send("a", "ping", actorSystem.now(TimeUnit.MILLISECONDS)));
+        CompletableFuture<Void> timeout = a.sendThenWithTimeout("b", "noSuchTopic", 10, TimeUnit.MINUTES);
+        long start = System.nanoTime();
+        actorSystem.runFor(1, TimeUnit.HOURS);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(TimeUnit.HOURS.toMillis(1), actorSystem.now(TimeUnit.MILLISECONDS));
+        assertTrue(timeout.isCompletedExceptionally());
+        actorSystem.stop();
+        return trace;
+    }
+
+    @Test
+    public void testMessageTracing() throws InterruptedException, ExecutionException {
+        Actor client = Actor.builder().addr("client").build();
+        Actor server = Actor.builder().addr("server").<Integer, Integer>addActorListener("echo", i -> i).build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(client)
+                .addActor(server)
+                .traceSampleRate(10)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, client.<Integer>sendThen("server", "echo", i).get());
+        }
+        Thread.sleep(100);
+        List<TraceRecord> traces = actorSystem.getTraces();
+        // 每10个请求采样一个，响应和请求使用同一个traceId
+        assertEquals(10, traces.stream().mapToLong(TraceRecord::getTraceId).distinct().count());
+        for (long traceId : traces.stream().mapToLong(TraceRecord::getTraceId).distinct().toArray()) {
+            List<TraceRecord> records = new ArrayList<>();
+            traces.stream().filter(r -> r.getTraceId() == traceId).forEach(records::add);
+            assertEquals(TraceStage.CREATED, records.get(0).getStage());
+            assertEquals("echo", records.get(0).getTopic());
+            assertEquals(2, records.stream().filter(r -> r.getStage() == TraceStage.CONSUMED).count());
+            assertEquals(TraceStage.CONSUMED, records.get(records.size() - 1).getStage());
+        }
+        actorSystem.clearTraces();
+        assertTrue(actorSystem.getTraces().isEmpty());
+
+        // 非Actor线程结束后，它的缓冲区在下一次读取后被移除
+        Thread sender = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                client.send("server", "echo", i);
+            }
+        }, "trace-sender");
+        sender.start();
+        sender.join();
+        Thread.sleep(100);
+        assertTrue(actorSystem.getTraces().stream().anyMatch(r -> "trace-sender".equals(r.getThreadName())));
+        assertTrue(actorSystem.getTraces().stream().noneMatch(r -> "trace-sender".equals(r.getThreadName())));
+        actorSystem.stop();
+    }
+
+    @Test
+    public void testLatencyHistograms() throws InterruptedException {
+        // 每个值都落在所在桶的范围内，误差不超过12.5%
+        for (long v = 1; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 1) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(v));
+            assertTrue(upper >= v && upper - v <= v / 8, "value: " + v + ", upper: " + upper);
+        }
+        CountDownLatch latch = new CountDownLatch(40);
+        Actor sender = Actor.builder().addr("sender").enableMetric().build();
+        Actor receiver = Actor.builder().addr("receiver").enableMetric()
+                .addActorListener("fast", latch::countDown)
+                .addActorListener("slow", () -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    latch.countDown();
+                })
+                .build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        for (int i = 0; i < 20; i++) {
+            sender.send("receiver", "fast");
+            sender.send("receiver", "slow");
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        List<LatencySnapshot> snapshots = actorSystem.getLatencySnapshots();
+        LatencySnapshot slow = snapshots.stream()
+                .filter(l -> l.getAddr().equals("receiver") && l.getTopic().equals("slow") && l.getType() == LatencyType.HANDLER)
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals(20, slow.getCount());
+        assertTrue(slow.getValueAtPercentile(50) >= TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(snapshots.stream().anyMatch(l -> l.getAddr().equals("sender") && l.getType() == LatencyType.OUTBOX_WAIT && l.getCount() == 20));
+        assertTrue(snapshots.stream().anyMatch(l -> l.getTopic().equals("fast") && l.getType() == LatencyType.INBOX_WAIT));
+        actorSystem.resetLatencies();
+        assertTrue(actorSystem.getLatencySnapshots().isEmpty());
+        actorSystem.stop();
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        CountDownLatch latch = new CountDownLatch(100);
+        Actor sender = Actor.builder().addr("sender").build();
+        Actor receiver = Actor.builder().addr("receiver").addActorListener("topic", latch::countDown).build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .name("jmx-test")
+                .addActor(sender)
+                .addActor(receiver)
+                .enableJmx()
+                .build();
+        for (int i = 0; i < 100; i++) {
+            sender.send("receiver", "topic");
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 查询不存在的队列不会创建队列
+        assertEquals(0, receiver.getInboxQueueSize("noSuchTopic"));
+        assertFalse(receiver.getInbox().getQueueSizes().containsKey("noSuchTopic"));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName actorName = new ObjectName("com.github.liyue2008.actor:type=Actor,system=\"jmx-test\",name=\"receiver\"");
+        assertEquals(100L, server.getAttribute(actorName, "InboxDequeueCount"));
+        assertEquals(100L, server.getAttribute(new ObjectName("com.github.liyue2008.actor:type=Actor,system=\"jmx-test\",name=\"sender\""), "OutboxDequeueCount"));
+        assertTrue(server.queryNames(new ObjectName("com.github.liyue2008.actor:type=ActorThread,system=\"jmx-test\",*"), null).size() > 0);
+        assertTrue((Long) server.getAttribute(new ObjectName("com.github.liyue2008.actor:type=ActorSystem,name=\"jmx-test\""), "ProcessedCount") >= 100L);
+        actorSystem.stop();
+        assertFalse(server.isRegistered(actorName));
+    }
+
+    @Test
+    public void testPrometheusExporter() throws Exception {
+        CountDownLatch latch = new CountDownLatch(100);
+        Actor sender = Actor.builder().addr("sender").enableMetric().build();
+        Actor receiver = Actor.builder().addr("receiver").enableMetric().addActorListener("topic", latch::countDown).build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .name("prometheus-test")
+                .addActor(sender)
+                .addActor(receiver)
+                .enablePrometheus(0)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            sender.send("receiver", "topic");
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 处理函数返回后才记录耗时
+        Thread.sleep(50);
+        int port = actorSystem.getPrometheusPort();
+        assertTrue(port > 0);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/metrics").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        }
+        String metrics = new String(body.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(metrics.contains("actor_messages_sent_total{system=\"prometheus-test\",actor=\"sender\"} 100\n"));
+        assertTrue(metrics.contains("actor_messages_processed_total{system=\"prometheus-test\",actor=\"receiver\"} 100\n"));
+        assertTrue(metrics.contains("actor_inbox_queue_depth{system=\"prometheus-test\",actor=\"receiver\",queue=\"topic\"} 0\n"));
+        assertTrue(metrics.contains("actor_pending_requests{system=\"prometheus-test\",actor=\"sender\"} 0\n"));
+        assertTrue(metrics.contains("actor_scheduler_tasks{system=\"prometheus-test\"} 0\n"));
+        assertTrue(metrics.contains("actor_latency_seconds_count{system=\"prometheus-test\",actor=\"receiver\",topic=\"topic\",stage=\"handler\"} 100\n"));
+        assertTrue(metrics.contains("# TYPE actor_latency_seconds summary\n"));
+        actorSystem.stop();
+        assertEquals(-1, actorSystem.getPrometheusPort());
+    }
+
+    @Test
+    public void testJfrEvents() throws Exception {
+        Actor receiver = Actor.builder().addr("receiver").addActorListener("ping", () -> "pong").build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        // 默认关闭
+        assertEquals("pong", sender.sendThen("receiver", "ping").get(5, TimeUnit.SECONDS));
+        assertFalse(ActorEvents.handlerEnabled);
+
+        Path file = Files.createTempFile("actor", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.liyue2008.actor.Send");
+            recording.enable("com.github.liyue2008.actor.Dispatch");
+            recording.enable("com.github.liyue2008.actor.Handler");
+            recording.enable("com.github.liyue2008.actor.Response");
+            recording.start();
+            assertTrue(ActorEvents.handlerEnabled);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("pong", sender.sendThen("receiver", "ping").get(5, TimeUnit.SECONDS));
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        assertFalse(ActorEvents.handlerEnabled);
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        Set<String> types = events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toSet());
+        assertTrue(types.contains("com.github.liyue2008.actor.Send"));
+        assertTrue(types.contains("com.github.liyue2008.actor.Dispatch"));
+        assertTrue(types.contains("com.github.liyue2008.actor.Response"));
+        RecordedEvent handler = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.github.liyue2008.actor.Handler") && "ping".equals(e.getString("topic")))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals("receiver", handler.getString("actor"));
+        assertEquals("sender", handler.getString("sender"));
+        assertFalse(handler.getDuration().isNegative());
+        actorSystem.stop();
+    }
+
+    @Test
+    public void testWatchdog() throws Exception {
+        CountDownLatch latch = new CountDownLatch(11);
+        Actor receiver = Actor.builder().addr("receiver")
+                .addActorListener("fast", latch::countDown)
+                .addActorListener("slow", () -> {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    latch.countDown();
+                })
+                .build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .addActor(sender)
+                .addActor(receiver)
+                .watchdog(20, TimeUnit.MILLISECONDS)
+                .build();
+        Path file = Files.createTempFile("actor", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.liyue2008.actor.StuckHandler");
+            recording.start();
+            sender.send("receiver", "slow");
+            for (int i = 0; i < 10; i++) {
+                sender.send("receiver", "fast");
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            recording.stop();
+            recording.dump(file);
+        }
+        // 处理函数返回后才计数
+        Thread.sleep(50);
+        Map<String, Map<String, Long>> slowHandlers = actorSystem.getSlowHandlerCounts();
+        assertEquals(1L, slowHandlers.get("receiver").get("slow"));
+        assertFalse(slowHandlers.get("receiver").containsKey("fast"));
+
+        // 处理过程中被发现，并且只报告一次
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertEquals(1, events.size());
+        assertEquals("receiver", events.get(0).getString("actor"));
+        assertEquals("slow", events.get(0).getString("topic"));
+        assertTrue(events.get(0).getString("stack").contains("java.lang.Thread.sleep"));
+        actorSystem.stop();
+    }
+
+    @Test
+    public void testThreadStats() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(5);
+        // 忙等待，占用CPU
+        Actor receiver = Actor.builder().addr("receiver").addActorListener("spin", () -> {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+            while (System.nanoTime() < deadline) {
+                // busy spin
+            }
+            latch.countDown();
+        }).build();
+        Actor sender = Actor.builder().addr("sender").build();
+        ActorSystem actorSystem = ActorSystem.builder()
+                .threadCount(1)
+                .addActor(sender)
+                .addActor(receiver)
+                .build();
+        ActorThreadStats before = actorSystem.getThreadStatsTotal();
+        for (int i = 0; i < 5; i++) {
+            sender.send("receiver", "spin");
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        List<ActorThreadStats> statsList = actorSystem.getThreadStats();
+        assertEquals(1, statsList.size());
+        ActorThreadStats stats = statsList.get(0).minus(before);
+        assertTrue(stats.getHandlerNanos() >= TimeUnit.MILLISECONDS.toNanos(100), stats.toString());
+        assertTrue(stats.getParkNanos() > 0L, stats.toString());
+        assertTrue(stats.getOccupancy() > 0.0 && stats.getOccupancy() < 1.0, stats.toString());
+        // CPU时间取决于机器的负载，只检查是否可用
+        if (stats.getCpuNanos() >= 0) {
+            assertTrue(stats.getCpuNanos() > 0L, stats.toString());
+        }
+        actorSystem.stop();
+    }
+
     @Test
     @Disabled
     public void requestPerformanceTest() throws InterruptedException {